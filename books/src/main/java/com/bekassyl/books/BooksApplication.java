@@ -1,5 +1,8 @@
 package com.bekassyl.books;
 
+import com.bekassyl.books.config.BookSearchProperties;
+import com.bekassyl.books.config.HotInventoryProperties;
+import com.bekassyl.books.config.ReplicaProperties;
 import com.bekassyl.books.dto.BooksInfoDto;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Contact;
@@ -8,10 +11,13 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
-@EnableConfigurationProperties(BooksInfoDto.class)
+@EnableConfigurationProperties({BooksInfoDto.class, ReplicaProperties.class, HotInventoryProperties.class,
+        BookSearchProperties.class})
+@EnableScheduling
 @OpenAPIDefinition(
         info = @Info(
                 title = "Books microservice REST API Documentation",
@@ -0,0 +1,21 @@
+package com.bekassyl.books.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "books.search")
+public class BookSearchProperties {
+    /**
+     * Shortest query word matched as a prefix. Shorter words only match whole words, as a one or two letter
+     * prefix matches a large part of the catalog.
+     */
+    private int minPrefixLength = 3;
+
+    /**
+     * Maximum number of matching books ranked per search. Pages beyond it are empty.
+     */
+    private int maxCandidates = 1000;
+}
@@ -0,0 +1,49 @@
+package com.bekassyl.books.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "books.hot-inventory")
+public class HotInventoryProperties {
+    /**
+     * Whether loans and returns of the hot books are served from in-memory counters.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Isbns of the hot books.
+     */
+    private Set<String> isbns = new HashSet<>();
+
+    /**
+     * Pause between two flushes of the counters to the database.
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * The escrow of a book is refilled from the books table when fewer copies are left in it.
+     */
+    private int lowWatermark = 10;
+
+    /**
+     * Number of copies the escrow of a book is refilled or drained to.
+     */
+    private int target = 50;
+
+    /**
+     * Copies above this are given back to the books table, so other replicas can loan them.
+     */
+    private int highWatermark = 100;
+
+    /**
+     * Escrows not renewed for this long belong to a stopped replica and are given back to the books table.
+     */
+    private Duration leaseTtl = Duration.ofSeconds(30);
+}
@@ -2,6 +2,7 @@ package com.bekassyl.books.controller;
 
 import com.bekassyl.books.constants.BookConstants;
 import com.bekassyl.books.dto.BookDto;
+import com.bekassyl.books.dto.BookSearchPageDto;
 import com.bekassyl.books.dto.BooksInfoDto;
 import com.bekassyl.books.dto.ErrorResponseDto;
 import com.bekassyl.books.dto.ResponseDto;
@@ -13,7 +14,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -23,14 +27,17 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Tag(
         name = "CRUD REST APIs for Books in JaryqLibrary",
         description = "CRUD REST APIs in JaryqLibrary to CREATE, UPDATE, FETCH AND DELETE book details"
 )
 @RestController
-@RequestMapping(path = "/books/api", produces = {MediaType.APPLICATION_JSON_VALUE})
+@RequestMapping(path = "/books/api", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
 @RequiredArgsConstructor
 @Validated
 @Slf4j
@@ -70,6 +77,77 @@ public class BooksController {
         return ResponseEntity.ok(bookDto);
     }
 
+    @Operation(
+            summary = "Get Books Details In Bulk REST API",
+            description = "REST API to get Book details for a list of isbns in one call"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/fetch-bulk")
+    public ResponseEntity<List<BookDto>> fetchBooksDetails(
+            @RequestBody
+            @Size(max = 1000, message = "No more than 1000 ISBNs can be requested at once")
+            List<@Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String> isbns
+    ) {
+        log.debug("fetchBooksDetails() method starts");
+
+        List<BookDto> bookDtos = bookService.fetchBooks(new HashSet<>(isbns));
+
+        log.debug("fetchBooksDetails() method ends");
+
+        return ResponseEntity.ok(bookDtos);
+    }
+
+    @Operation(
+            summary = "Search Books REST API",
+            description = "REST API to search Books by title, author and genre, most relevant first. " +
+                    "Words match as prefixes, title and author words also match with typos"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @GetMapping("/search")
+    public ResponseEntity<BookSearchPageDto> searchBooks(
+            @RequestParam("q")
+            @Size(min = 2, max = 100, message = "Search text must contain between 2 and 100 characters")
+            String query,
+            @RequestParam(value = "page", defaultValue = "0")
+            @Min(value = 0, message = "Page must not be negative")
+            @Max(value = 50, message = "Page must not exceed 50") int page,
+            @RequestParam(value = "size", defaultValue = "20")
+            @Min(value = 1, message = "Page size must be at least 1")
+            @Max(value = 100, message = "Page size must not exceed 100") int size
+    ) {
+        log.debug("searchBooks() method starts");
+
+        BookSearchPageDto bookSearchPage = bookService.searchBooks(query, page, size);
+
+        log.debug("searchBooks() method ends");
+
+        return ResponseEntity.ok(bookSearchPage);
+    }
+
     @Operation(
             summary = "Loan Book REST API",
             description = "REST API to loan Book based on a isbn"
@@ -136,6 +214,72 @@ public class BooksController {
     }
 
 
+    @Operation(
+            summary = "Loan Books In Bulk REST API",
+            description = "REST API to loan one copy of each of several books in one call"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/loan-books")
+    public ResponseEntity<Set<String>> loanBooks(
+            @RequestBody
+            @Size(max = 100, message = "No more than 100 books can be loaned at once")
+            List<@Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String> isbns
+    ) {
+        log.debug("loanBooks() method starts");
+
+        Set<String> loaned = bookService.loanBooks(new HashSet<>(isbns));
+
+        log.debug("loanBooks() method ends");
+
+        return ResponseEntity.ok(loaned);
+    }
+
+
+    @Operation(
+            summary = "Return Books In Bulk REST API",
+            description = "REST API to return one copy of each of several books in one call"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/return-books")
+    public ResponseEntity<Set<String>> returnBooks(
+            @RequestBody
+            @Size(max = 100, message = "No more than 100 books can be returned at once")
+            List<@Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String> isbns
+    ) {
+        log.debug("returnBooks() method starts");
+
+        Set<String> returned = bookService.returnBooks(new HashSet<>(isbns));
+
+        log.debug("returnBooks() method ends");
+
+        return ResponseEntity.ok(returned);
+    }
+
+
     @Operation(
             summary = "Create Book REST API",
             description = "REST API to create a new Book in JaryqLibrary"
@@ -168,6 +312,40 @@ public class BooksController {
     }
 
 
+    @Operation(
+            summary = "Import Books REST API",
+            description = "REST API to create a catalog of new Books in JaryqLibrary in one call, skipping existing isbns"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "HTTP Status CREATED"),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/import")
+    public ResponseEntity<Set<String>> importBooks(
+            @RequestBody
+            @Size(max = 10000, message = "No more than 10000 books can be imported at once")
+            List<@Valid BookDto> bookDtos
+    ) {
+        log.debug("importBooks() method starts");
+
+        Set<String> imported = bookService.importBooks(bookDtos);
+
+        log.debug("importBooks() method ends");
+
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(imported);
+    }
+
+
     @Operation(
             summary = "Put Book Details REST API",
             description = "REST API to update Book details based on a isbn"
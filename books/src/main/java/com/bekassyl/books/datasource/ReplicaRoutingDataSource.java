@@ -0,0 +1,87 @@
+package com.bekassyl.books.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the available replicas in turn and everything else to the primary.
+ * The transaction's read-only flag is only known once the transaction has started, so this data source
+ * must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private static final String PRIMARY = "primary";
+
+    private final Map<String, DataSource> replicas;
+    private final List<String> replicaNames;
+    private final Set<String> available = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private final DataSource primary;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = Map.copyOf(replicas);
+        this.replicaNames = List.copyOf(replicas.keySet());
+        this.available.addAll(replicaNames);
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+
+        for (int i = 0; i < replicaNames.size(); i++) {
+            String replica = replicaNames.get(Math.floorMod(next.getAndIncrement(), replicaNames.size()));
+
+            if (available.contains(replica)) {
+                return replica;
+            }
+        }
+
+        return PRIMARY;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Takes the replica in or out of the read rotation.
+     */
+    public void setAvailable(String replica, boolean isAvailable) {
+        boolean changed = isAvailable ? available.add(replica) : available.remove(replica);
+
+        if (changed) {
+            log.warn("Replica {} is {} the read rotation", replica, isAvailable ? "back in" : "fenced out of");
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource dataSource : replicas.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
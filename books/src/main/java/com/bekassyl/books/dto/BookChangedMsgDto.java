@@ -0,0 +1,9 @@
+package com.bekassyl.books.dto;
+
+public record BookChangedMsgDto(String isbn,
+                                ChangeType change,
+                                int availableCopies) {
+    public enum ChangeType {
+        UPDATED, DELETED, AVAILABILITY
+    }
+}
@@ -0,0 +1,24 @@
+package com.bekassyl.books.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Schema(
+        name = "Book Search Page",
+        description = "Schema to hold one page of books found by a search, most relevant first"
+)
+public class BookSearchPageDto {
+    @Schema(description = "Books of the page")
+    private List<BookDto> books;
+
+    @Schema(description = "Number of the page, starting at 0", example = "0")
+    private int page;
+
+    @Schema(description = "Whether there is a next page", example = "true")
+    private boolean hasNext;
+}
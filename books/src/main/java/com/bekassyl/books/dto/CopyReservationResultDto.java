@@ -0,0 +1,6 @@
+package com.bekassyl.books.dto;
+
+public record CopyReservationResultDto(String checkoutId,
+                                       String bookIsbn,
+                                       boolean reserved) {
+}
@@ -0,0 +1,5 @@
+package com.bekassyl.books.dto;
+
+public record ReleaseCopyCommandDto(String checkoutId,
+                                    String bookIsbn) {
+}
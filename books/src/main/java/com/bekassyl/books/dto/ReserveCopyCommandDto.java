@@ -0,0 +1,5 @@
+package com.bekassyl.books.dto;
+
+public record ReserveCopyCommandDto(String checkoutId,
+                                    String bookIsbn) {
+}
@@ -12,7 +12,8 @@ import lombok.*;
 @Table(name = "books")
 public class Book extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_seq")
+    @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
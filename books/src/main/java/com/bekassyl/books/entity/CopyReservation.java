@@ -0,0 +1,32 @@
+package com.bekassyl.books.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Copy of a book held for a checkout of the loans service. Keyed by the checkout, so repeated reserve and
+ * release commands of the same checkout are applied once.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "copy_reservations")
+public class CopyReservation extends BaseEntity {
+    @Id
+    @Column(name = "checkout_id")
+    private String checkoutId;
+
+    @Column(name = "book_isbn", nullable = false)
+    private String bookIsbn;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ReservationStatus status;
+
+    public enum ReservationStatus {
+        RESERVED, REJECTED, RELEASED
+    }
+}
@@ -0,0 +1,55 @@
+package com.bekassyl.books.functions;
+
+import com.bekassyl.books.dto.BookChangedMsgDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Publishes book changes to {@code book-changed}. Every message is keyed by the ISBN, so all changes of one book
+ * land on one partition and are consumed in the order they were sent. A change made in a transaction is sent
+ * once the transaction commits, so a rolled back change is never published and the published number of
+ * available copies is the committed one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookChangedPublisher {
+    private static final String BINDING = "sendBookChanged-out-0";
+
+    private final StreamBridge streamBridge;
+
+    public void publish(BookChangedMsgDto bookChangedMsgDto) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(bookChangedMsgDto);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                send(bookChangedMsgDto);
+            }
+        });
+    }
+
+    private void send(BookChangedMsgDto bookChangedMsgDto) {
+        Message<BookChangedMsgDto> message = MessageBuilder.withPayload(bookChangedMsgDto)
+                .setHeader(KafkaHeaders.KEY, bookChangedMsgDto.isbn().getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        log.debug("Sending a request to the sendBookChanged with details: {}", bookChangedMsgDto);
+
+        boolean result = streamBridge.send(BINDING, message);
+
+        log.debug("Is the request successfully triggered?: {}", result);
+    }
+}
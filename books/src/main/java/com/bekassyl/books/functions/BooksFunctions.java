@@ -0,0 +1,34 @@
+package com.bekassyl.books.functions;
+
+import com.bekassyl.books.dto.CopyReservationResultDto;
+import com.bekassyl.books.dto.ReleaseCopyCommandDto;
+import com.bekassyl.books.dto.ReserveCopyCommandDto;
+import com.bekassyl.books.service.IBookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+@Slf4j
+@Configuration
+public class BooksFunctions {
+    @Bean
+    public Function<ReserveCopyCommandDto, CopyReservationResultDto> reserveCopy(IBookService bookService) {
+        return reserveCopyCommandDto -> {
+            log.info("Reserving a copy for the checkout: {}", reserveCopyCommandDto);
+
+            return bookService.reserveCopy(reserveCopyCommandDto.checkoutId(), reserveCopyCommandDto.bookIsbn());
+        };
+    }
+
+    @Bean
+    public Consumer<ReleaseCopyCommandDto> releaseCopy(IBookService bookService) {
+        return releaseCopyCommandDto -> {
+            log.info("Releasing the copy of the checkout: {}", releaseCopyCommandDto);
+
+            bookService.releaseCopy(releaseCopyCommandDto.checkoutId(), releaseCopyCommandDto.bookIsbn());
+        };
+    }
+}
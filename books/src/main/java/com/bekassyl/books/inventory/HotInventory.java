@@ -0,0 +1,390 @@
+package com.bekassyl.books.inventory;
+
+import com.bekassyl.books.config.HotInventoryProperties;
+import com.bekassyl.books.dto.BookChangedMsgDto;
+import com.bekassyl.books.functions.BookChangedPublisher;
+import com.bekassyl.books.repository.InventoryEscrowRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves loans and returns of hot books from in-memory counters, so bestseller traffic does not queue on the
+ * book's row lock. Each replica keeps an escrow of copies taken off {@code books.available_copies}: loans and
+ * returns only move its counter, and the counter is refilled from or drained to the books table in periodic
+ * flushes that also record it in {@code inventory_escrows}. Replicas never share a counter, so no ISBN needs an
+ * owner. The escrows of a replica that stopped renewing them are given back to the books table by any replica,
+ * on startup and on every flush.
+ * <p>
+ * A replica only lends from memory while its escrows are known to be valid. When one turns out to have expired,
+ * the replica gives back the copies actually left in its escrows, correcting for what another replica may have
+ * given back already, and starts over; a graceful shutdown does the same. Only the escrows of a crashed replica
+ * are given back as of its last flush, so its loans and returns after that flush are not reflected. An escrow
+ * never holds more than the book's total copies. A replica with an empty escrow falls back to the books table
+ * and may find it empty while other replicas still hold copies.
+ */
+@Slf4j
+@Component
+public class HotInventory {
+    private final InventoryEscrowRepository inventoryEscrowRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final BookChangedPublisher bookChangedPublisher;
+    private final HotInventoryProperties properties;
+    private final Map<String, Escrow> escrows = new ConcurrentHashMap<>();
+    private final String replicaId;
+    private volatile boolean open;
+
+    /**
+     * Monotonic time the escrows of this replica are known to be valid until. Loans and returns go to the books
+     * table after it, so copies another replica may have given back are never lent twice.
+     */
+    private volatile long leaseDeadline = System.nanoTime();
+
+    private static final class Escrow {
+        private final AtomicInteger copies = new AtomicInteger();
+        private final AtomicBoolean changed = new AtomicBoolean();
+        private volatile boolean recorded;
+
+        /**
+         * Copies recorded in {@code inventory_escrows} by the last committed flush, what another replica gives
+         * back when the escrow expires.
+         */
+        private volatile int recordedHeld;
+        private volatile int totalCopies;
+    }
+
+    /**
+     * Thrown when an escrow of this replica expired and may have been given back by another replica.
+     */
+    private static final class EscrowLostException extends RuntimeException {
+        private EscrowLostException(String isbn) {
+            super("The escrow of the book " + isbn + " has expired");
+        }
+    }
+
+    public HotInventory(InventoryEscrowRepository inventoryEscrowRepository,
+                        PlatformTransactionManager transactionManager,
+                        BookChangedPublisher bookChangedPublisher,
+                        HotInventoryProperties properties,
+                        @Value("${spring.application.name}") String applicationName) {
+        this.inventoryEscrowRepository = inventoryEscrowRepository;
+        this.transactionManager = transactionManager;
+        this.bookChangedPublisher = bookChangedPublisher;
+        this.properties = properties;
+        this.replicaId = applicationName + ":" + UUID.randomUUID();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void open() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        int released = inventoryEscrowRepository.releaseExpired();
+
+        if (released > 0) {
+            log.info("Gave back the expired escrows of {} books", released);
+        }
+
+        properties.getIsbns().forEach(isbn -> escrows.put(isbn, new Escrow()));
+        long start = System.nanoTime();
+        refreshTotalCopies();
+        escrows.forEach(this::rebalance);
+        leaseDeadline = start + properties.getLeaseTtl().toNanos();
+        open = true;
+
+        log.info("Serving the hot books {} from memory", escrows.keySet());
+    }
+
+    /**
+     * @return whether the book is served from memory, its available copies then include the escrows
+     */
+    public boolean isHot(String isbn) {
+        return open && escrows.containsKey(isbn);
+    }
+
+    /**
+     * Takes one copy of a hot book from the escrow of this replica. Inside a transaction the copy is put back to
+     * the escrow if the transaction rolls back.
+     *
+     * @return {@code false} if the book is not hot or the escrow is empty, the books table decides then
+     */
+    public boolean tryTakeCopy(String isbn) {
+        Escrow escrow = leased() ? escrows.get(isbn) : null;
+
+        if (escrow == null || !take(escrow)) {
+            return false;
+        }
+
+        escrow.changed.set(true);
+        onRollback(() -> escrow.copies.incrementAndGet());
+
+        return true;
+    }
+
+    /**
+     * Puts one copy of a hot book back to the escrow of this replica. Inside a transaction the copy is taken out
+     * of the escrow again if the transaction rolls back.
+     *
+     * @return {@code false} if the book is not hot or the escrow already holds all its copies, the books table
+     * decides then
+     */
+    public boolean tryPutCopyBack(String isbn) {
+        Escrow escrow = leased() ? escrows.get(isbn) : null;
+
+        if (escrow == null || !putBack(escrow)) {
+            return false;
+        }
+
+        escrow.changed.set(true);
+        onRollback(() -> take(escrow));
+
+        return true;
+    }
+
+    private boolean leased() {
+        return open && System.nanoTime() - leaseDeadline < 0;
+    }
+
+    private static boolean take(Escrow escrow) {
+        int copies;
+
+        do {
+            copies = escrow.copies.get();
+
+            if (copies == 0) {
+                return false;
+            }
+        } while (!escrow.copies.compareAndSet(copies, copies - 1));
+
+        return true;
+    }
+
+    private static boolean putBack(Escrow escrow) {
+        int copies;
+
+        do {
+            copies = escrow.copies.get();
+
+            if (copies >= escrow.totalCopies) {
+                return false;
+            }
+        } while (!escrow.copies.compareAndSet(copies, copies + 1));
+
+        return true;
+    }
+
+    private static void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    compensation.run();
+                }
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * @return available copies of the hot book in the books table and in all escrows, as of the last flushes
+     */
+    public int availableCopies(String isbn) {
+        return availableCopies(List.of(isbn)).getOrDefault(isbn, 0);
+    }
+
+    /**
+     * Reads the available copies of several hot books with one query.
+     *
+     * @return available copies of the hot books in the books table and in all escrows, as of the last flushes;
+     * books that do not exist are left out
+     */
+    public Map<String, Integer> availableCopies(Collection<String> isbns) {
+        return inventoryEscrowRepository.findAvailableCopies(isbns);
+    }
+
+    @Scheduled(initialDelayString = "${books.hot-inventory.flush-interval:PT0.2S}",
+            fixedDelayString = "${books.hot-inventory.flush-interval:PT0.2S}")
+    public void flush() {
+        if (!open) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            inventoryEscrowRepository.releaseExpired();
+
+            long recorded = escrows.values().stream().filter(escrow -> escrow.recorded).count();
+
+            if (inventoryEscrowRepository.renew(replicaId, properties.getLeaseTtl()) < recorded) {
+                fence();
+            }
+
+            refreshTotalCopies();
+            escrows.forEach(this::rebalance);
+            leaseDeadline = start + properties.getLeaseTtl().toNanos();
+        } catch (EscrowLostException e) {
+            fence();
+        } catch (RuntimeException e) {
+            log.warn("Flushing the hot inventory failed, it is retried on the next flush", e);
+        }
+    }
+
+    /**
+     * Drops the escrows of this replica after one of them expired and gives their copies back to the books table.
+     * They are refilled by the following flushes.
+     */
+    private void fence() {
+        leaseDeadline = System.nanoTime();
+        log.warn("The hot inventory escrows of {} expired, dropping them", replicaId);
+
+        giveBack(true);
+    }
+
+    /**
+     * Gives the copies left in the escrows of this replica back to the books table. An escrow still recorded is
+     * deleted and its in-memory copies are added to the books table. An escrow another replica has given back
+     * already had the copies of the last flush added, so only the difference to the in-memory copies is: loans
+     * made since are taken off again and returns added.
+     *
+     * @param retry whether an escrow that could not be given back keeps its copies, for the next flush to retry
+     */
+    private void giveBack(boolean retry) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        escrows.forEach((isbn, escrow) -> {
+            int copies = escrow.copies.getAndSet(0);
+            boolean recorded = escrow.recorded;
+            int recordedHeld = escrow.recordedHeld;
+            escrow.recorded = false;
+            escrow.recordedHeld = 0;
+            escrow.changed.set(true);
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Integer held = inventoryEscrowRepository.deleteHeld(replicaId, isbn);
+                    int count = held == null && recorded ? copies - recordedHeld : copies;
+
+                    if (count != 0) {
+                        inventoryEscrowRepository.adjustCopies(isbn, count);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Giving back the escrow of the book {} failed", isbn, e);
+
+                if (retry) {
+                    escrow.copies.addAndGet(copies);
+                    escrow.recorded = recorded;
+                    escrow.recordedHeld = recordedHeld;
+                }
+            }
+        });
+    }
+
+    private void refreshTotalCopies() {
+        inventoryEscrowRepository.findTotalCopies(escrows.keySet())
+                .forEach((isbn, totalCopies) -> escrows.get(isbn).totalCopies = totalCopies);
+    }
+
+    /**
+     * Refills the escrow below the low watermark, drains it above the high watermark and records it.
+     *
+     * @throws EscrowLostException if the recorded escrow has expired
+     */
+    private void rebalance(String isbn, Escrow escrow) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int copies = escrow.copies.get();
+
+        if (copies < properties.getLowWatermark()) {
+            int taken = transactionTemplate.execute(status -> {
+                int count = inventoryEscrowRepository.takeCopies(isbn, properties.getTarget() - copies);
+                saveHeld(isbn, escrow, escrow.copies.get() + count);
+                return count;
+            });
+
+            escrow.copies.addAndGet(taken);
+        } else if (copies > properties.getHighWatermark()
+                && escrow.copies.compareAndSet(copies, properties.getTarget())) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    inventoryEscrowRepository.putCopiesBack(isbn, copies - properties.getTarget());
+                    saveHeld(isbn, escrow, escrow.copies.get());
+                });
+            } catch (RuntimeException e) {
+                escrow.copies.addAndGet(copies - properties.getTarget());
+                throw e;
+            }
+        } else if (escrow.changed.get()) {
+            transactionTemplate.executeWithoutResult(status -> saveHeld(isbn, escrow, escrow.copies.get()));
+        }
+
+        if (escrow.changed.getAndSet(false)) {
+            sendAvailabilityChanged(isbn);
+        }
+    }
+
+    private void saveHeld(String isbn, Escrow escrow, int held) {
+        if (!escrow.recorded) {
+            inventoryEscrowRepository.insertHeld(replicaId, isbn, held, properties.getLeaseTtl());
+        } else if (!inventoryEscrowRepository.updateHeld(replicaId, isbn, held, properties.getLeaseTtl())) {
+            throw new EscrowLostException(isbn);
+        }
+
+        afterCommit(() -> {
+            escrow.recorded = true;
+            escrow.recordedHeld = held;
+        });
+    }
+
+    private void sendAvailabilityChanged(String isbn) {
+        bookChangedPublisher.publish(new BookChangedMsgDto(
+                isbn, BookChangedMsgDto.ChangeType.AVAILABILITY, availableCopies(isbn)));
+    }
+
+    /**
+     * Gives all escrowed copies back to the books table, so a graceful shutdown loses nothing.
+     */
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+
+        open = false;
+        giveBack(false);
+    }
+}
@@ -2,11 +2,98 @@ package com.bekassyl.books.repository;
 
 import com.bekassyl.books.entity.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     Optional<Book> findByIsbn(String isbn);
+
+    boolean existsByIsbn(String isbn);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    /**
+     * Takes one available copy of the book, unless none is left.
+     *
+     * @return 1 if a copy was taken, 0 otherwise
+     */
+    @Modifying
+    @Query("update Book b set b.availableCopies = b.availableCopies - 1 where b.isbn = :isbn and b.availableCopies > 0")
+    int takeCopy(@Param("isbn") String isbn);
+
+    /**
+     * Puts one copy of the book back, never above its total copies.
+     *
+     * @return 1 if a copy was put back, 0 otherwise
+     */
+    @Modifying
+    @Query("update Book b set b.availableCopies = b.availableCopies + 1 where b.isbn = :isbn and b.availableCopies < b.totalCopies")
+    int putCopyBack(@Param("isbn") String isbn);
+
+    /**
+     * Takes one available copy of the book in one statement, unless none is left.
+     *
+     * @return available copies left after the copy was taken, empty if no copy was taken
+     */
+    @Query(value = "UPDATE books SET available_copies = available_copies - 1 " +
+            "WHERE isbn = :isbn AND available_copies > 0 RETURNING available_copies", nativeQuery = true)
+    Optional<Integer> takeCopyReturningAvailable(@Param("isbn") String isbn);
+
+    /**
+     * Puts one copy of the book back in one statement, never above its total copies.
+     *
+     * @return available copies after the copy was put back, empty if no copy was put back
+     */
+    @Query(value = "UPDATE books SET available_copies = available_copies + 1 " +
+            "WHERE isbn = :isbn AND available_copies < total_copies RETURNING available_copies", nativeQuery = true)
+    Optional<Integer> putCopyBackReturningAvailable(@Param("isbn") String isbn);
+
+    /**
+     * Takes one available copy of each book in one statement, skipping books with no copy left.
+     *
+     * @return isbn and remaining available copies of each book a copy was taken of
+     */
+    @Query(value = "UPDATE books SET available_copies = available_copies - 1 " +
+            "WHERE isbn IN (:isbns) AND available_copies > 0 RETURNING isbn, available_copies", nativeQuery = true)
+    List<Object[]> takeCopies(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Puts one copy of each book back in one statement, never above its total copies.
+     *
+     * @return isbn and available copies of each book a copy was put back of
+     */
+    @Query(value = "UPDATE books SET available_copies = available_copies + 1 " +
+            "WHERE isbn IN (:isbns) AND available_copies < total_copies RETURNING isbn, available_copies", nativeQuery = true)
+    List<Object[]> putCopiesBack(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Finds books matching the full-text query over title, author and genre, or whose title and author contain
+     * words similar to the text, most relevant first. Both conditions are served by GIN indexes. At most
+     * {@code candidates} matching books are ranked, so a query matching much of the catalog does not compute
+     * the rank of every match before the page is cut.
+     *
+     * @param tsQuery    full-text query in {@code to_tsquery} syntax
+     * @param text       search text as typed, for the trigram word similarity
+     * @param candidates maximum number of matching books to rank
+     */
+    @Query(value = "SELECT c.* FROM (SELECT b.* FROM books b, to_tsquery('simple', :tsQuery) q " +
+            "WHERE b.search_vector @@ q OR :text <% (b.title || ' ' || b.author) LIMIT :candidates) c, " +
+            "to_tsquery('simple', :tsQuery) q " +
+            "ORDER BY ts_rank_cd(c.search_vector, q) + word_similarity(:text, c.title || ' ' || c.author) DESC, c.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Book> search(@Param("tsQuery") String tsQuery, @Param("text") String text,
+                      @Param("candidates") int candidates, @Param("limit") int limit, @Param("offset") int offset);
+
+    /**
+     * @return available copies of the book, empty if the book does not exist (any more)
+     */
+    @Query("select b.availableCopies from Book b where b.isbn = :isbn")
+    Optional<Integer> findAvailableCopies(@Param("isbn") String isbn);
 }
@@ -0,0 +1,9 @@
+package com.bekassyl.books.repository;
+
+import com.bekassyl.books.entity.CopyReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CopyReservationRepository extends JpaRepository<CopyReservation, String> {
+}
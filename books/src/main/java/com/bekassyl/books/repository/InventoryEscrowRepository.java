@@ -0,0 +1,138 @@
+package com.bekassyl.books.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copies of hot books held in memory by a replica. Copies in an escrow are taken off
+ * {@code books.available_copies}, so the available copies of a book are its row plus all its escrows.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryEscrowRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes up to {@code count} available copies of the book off the books table.
+     *
+     * @return number of copies taken
+     */
+    public int takeCopies(String isbn, int count) {
+        Integer taken = jdbcTemplate.query("WITH b AS (SELECT isbn, least(available_copies, ?) AS taken " +
+                        "FROM books WHERE isbn = ? FOR UPDATE) " +
+                        "UPDATE books SET available_copies = available_copies - b.taken FROM b " +
+                        "WHERE books.isbn = b.isbn RETURNING b.taken",
+                resultSet -> resultSet.next() ? resultSet.getInt(1) : 0, count, isbn);
+
+        return taken == null ? 0 : taken;
+    }
+
+    /**
+     * Puts copies of the book back to the books table, never above its total copies.
+     */
+    public void putCopiesBack(String isbn, int count) {
+        jdbcTemplate.update("UPDATE books SET available_copies = least(total_copies, available_copies + ?) " +
+                "WHERE isbn = ?", count, isbn);
+    }
+
+    /**
+     * Records the escrow of the book for the replica.
+     */
+    public void insertHeld(String replicaId, String isbn, int held, Duration leaseTtl) {
+        jdbcTemplate.update("INSERT INTO inventory_escrows (replica_id, isbn, held, lease_until) " +
+                "VALUES (?, ?, ?, now() + make_interval(secs => ?))", replicaId, isbn, held, leaseTtl.toSeconds());
+    }
+
+    /**
+     * Records the copies of the book held by the replica and renews the escrow, unless it has expired.
+     *
+     * @return whether the escrow was still valid
+     */
+    public boolean updateHeld(String replicaId, String isbn, int held, Duration leaseTtl) {
+        return jdbcTemplate.update("UPDATE inventory_escrows SET held = ?, " +
+                "lease_until = now() + make_interval(secs => ?) " +
+                "WHERE replica_id = ? AND isbn = ? AND lease_until >= now()",
+                held, leaseTtl.toSeconds(), replicaId, isbn) == 1;
+    }
+
+    /**
+     * Renews the escrows of the replica that have not expired.
+     *
+     * @return number of renewed escrows
+     */
+    public int renew(String replicaId, Duration leaseTtl) {
+        return jdbcTemplate.update("UPDATE inventory_escrows SET lease_until = now() + make_interval(secs => ?) " +
+                "WHERE replica_id = ? AND lease_until >= now()", leaseTtl.toSeconds(), replicaId);
+    }
+
+    /**
+     * Deletes the escrow of the book for the replica, whether it has expired or not.
+     *
+     * @return copies the deleted escrow recorded, or {@code null} if another replica has given it back already
+     */
+    public Integer deleteHeld(String replicaId, String isbn) {
+        return jdbcTemplate.query("DELETE FROM inventory_escrows WHERE replica_id = ? AND isbn = ? RETURNING held",
+                resultSet -> resultSet.next() ? resultSet.getInt(1) : null, replicaId, isbn);
+    }
+
+    /**
+     * Adds copies of the book to the books table, or takes them off for a negative count, staying between zero
+     * and its total copies.
+     */
+    public void adjustCopies(String isbn, int count) {
+        jdbcTemplate.update("UPDATE books SET available_copies = " +
+                "least(total_copies, greatest(0, available_copies + ?)) WHERE isbn = ?", count, isbn);
+    }
+
+    /**
+     * Gives the copies of expired escrows back to the books table in one statement.
+     *
+     * @return number of books copies were given back to
+     */
+    public int releaseExpired() {
+        return jdbcTemplate.update("WITH released AS (DELETE FROM inventory_escrows WHERE lease_until < now() " +
+                "RETURNING isbn, held), totals AS (SELECT isbn, sum(held) AS held FROM released GROUP BY isbn) " +
+                "UPDATE books SET available_copies = least(total_copies, available_copies + totals.held) " +
+                "FROM totals WHERE books.isbn = totals.isbn");
+    }
+
+    /**
+     * @return total copies of the books, books that do not exist are left out
+     */
+    public Map<String, Integer> findTotalCopies(Collection<String> isbns) {
+        return queryByIsbns("SELECT isbn, total_copies FROM books WHERE isbn = ANY(?)", isbns);
+    }
+
+    /**
+     * @return available copies of the books in the books table and in all escrows, as of the last flushes; books
+     * that do not exist are left out
+     */
+    public Map<String, Integer> findAvailableCopies(Collection<String> isbns) {
+        return queryByIsbns("SELECT b.isbn, b.available_copies + coalesce(" +
+                "(SELECT sum(e.held) FROM inventory_escrows e WHERE e.isbn = b.isbn), 0) " +
+                "FROM books b WHERE b.isbn = ANY(?)", isbns);
+    }
+
+    private Map<String, Integer> queryByIsbns(String sql, Collection<String> isbns) {
+        Map<String, Integer> copies = new HashMap<>();
+
+        if (isbns.isEmpty()) {
+            return copies;
+        }
+
+        jdbcTemplate.query(sql,
+                preparedStatement -> preparedStatement.setArray(
+                        1, preparedStatement.getConnection().createArrayOf("text", isbns.toArray())),
+                resultSet -> {
+                    copies.put(resultSet.getString(1), resultSet.getInt(2));
+                });
+
+        return copies;
+    }
+}
@@ -1,9 +1,15 @@
 package com.bekassyl.books.service;
 
 import com.bekassyl.books.dto.BookDto;
+import com.bekassyl.books.dto.BookSearchPageDto;
+import com.bekassyl.books.dto.CopyReservationResultDto;
 import com.bekassyl.books.exception.ResourceNotFoundException;
 import com.bekassyl.books.exception.BookAlreadyExistsException;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 public interface IBookService {
     /**
      * Finds book details by isbn.
@@ -14,6 +20,25 @@ public interface IBookService {
      */
     BookDto fetchBook(String isbn);
 
+    /**
+     * Finds book details for several isbns at once.
+     *
+     * @param isbns isbns to search for
+     * @return DTOs for the books that were found, isbns without a book are skipped
+     */
+    List<BookDto> fetchBooks(Collection<String> isbns);
+
+    /**
+     * Searches books by title, author and genre. Words match as prefixes, and title and author words also
+     * match with typos.
+     *
+     * @param query search text
+     * @param page  number of the page, starting at 0
+     * @param size  number of books per page
+     * @return page of the books found, most relevant first
+     */
+    BookSearchPageDto searchBooks(String query, int page, int size);
+
     /**
      * Loan book by isbn.
      *
@@ -26,10 +51,53 @@ public interface IBookService {
      * Return book by isbn.
      *
      * @param isbn isbn to search for
-     * @return {@code true} if return was successful, {@code false} otherwise
+     * @return {@code true} if return was successful, {@code false} if all copies are already in
      */
     boolean returnBook(String isbn);
 
+    /**
+     * Loans one copy of each book in one statement.
+     *
+     * @param isbns isbns of the books to loan
+     * @return isbns of the books a copy was loaned of, the others had no copy left or do not exist
+     */
+    Set<String> loanBooks(Collection<String> isbns);
+
+    /**
+     * Returns one copy of each book in one statement.
+     *
+     * @param isbns isbns of the books to return
+     * @return isbns of the books a copy was returned of
+     */
+    Set<String> returnBooks(Collection<String> isbns);
+
+    /**
+     * Reserves one copy of the book for a checkout. Repeated commands of the same checkout return the
+     * outcome of the first one.
+     *
+     * @param checkoutId id of the checkout in the loans service
+     * @param isbn       isbn of the book to reserve
+     * @return DTO telling whether a copy was reserved
+     */
+    CopyReservationResultDto reserveCopy(String checkoutId, String isbn);
+
+    /**
+     * Releases the copy reserved for a checkout. A release that arrives before the reservation blocks
+     * the reservation from being made later.
+     *
+     * @param checkoutId id of the checkout in the loans service
+     * @param isbn       isbn of the reserved book
+     */
+    void releaseCopy(String checkoutId, String isbn);
+
+    /**
+     * Saves a catalog of new books with batched inserts. Books whose isbn already exists are skipped.
+     *
+     * @param bookDtos book data transfer objects
+     * @return isbns of the imported books
+     */
+    Set<String> importBooks(List<BookDto> bookDtos);
+
     /**
      * Saves a new book.
      *
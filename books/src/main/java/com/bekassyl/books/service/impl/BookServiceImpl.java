@@ -1,22 +1,52 @@
 package com.bekassyl.books.service.impl;
 
+import com.bekassyl.books.config.BookSearchProperties;
+import com.bekassyl.books.dto.BookChangedMsgDto;
 import com.bekassyl.books.dto.BookDto;
+import com.bekassyl.books.dto.BookSearchPageDto;
+import com.bekassyl.books.dto.CopyReservationResultDto;
 import com.bekassyl.books.entity.Book;
+import com.bekassyl.books.entity.CopyReservation;
+import com.bekassyl.books.functions.BookChangedPublisher;
+import com.bekassyl.books.inventory.HotInventory;
 import com.bekassyl.books.mapper.BookMapper;
 import com.bekassyl.books.repository.BookRepository;
+import com.bekassyl.books.repository.CopyReservationRepository;
 import com.bekassyl.books.service.IBookService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import com.bekassyl.books.exception.ResourceNotFoundException;
 import com.bekassyl.books.exception.BookAlreadyExistsException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class BookServiceImpl implements IBookService {
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
+    private final CopyReservationRepository copyReservationRepository;
+    private final BookChangedPublisher bookChangedPublisher;
+    private final HotInventory hotInventory;
+    private final BookSearchProperties searchProperties;
+    private final PlatformTransactionManager transactionManager;
 
     /**
      * Finds book details by isbn.
@@ -31,49 +61,242 @@ public class BookServiceImpl implements IBookService {
                 () -> new ResourceNotFoundException("Book", "ISBN", isbn)
         );
 
-        return bookMapper.toDto(book);
+        return toDto(book);
+    }
+
+    /**
+     * Finds book details for several isbns at once.
+     *
+     * @param isbns isbns to search for
+     * @return DTOs for the books that were found, isbns without a book are skipped
+     */
+    @Override
+    public List<BookDto> fetchBooks(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return List.of();
+        }
+
+        return toDtos(bookRepository.findByIsbnIn(isbns));
+    }
+
+    /**
+     * Searches books by title, author and genre. Every word of the query must match a word of the book, as a
+     * prefix once it has {@code books.search.min-prefix-length} characters; books whose title and author contain
+     * words similar to the query are found as well, so typos are tolerated. Only the first
+     * {@code books.search.max-candidates} matches are ranked.
+     *
+     * @param query search text
+     * @param page  number of the page, starting at 0
+     * @param size  number of books per page
+     * @return page of the books found, most relevant first
+     */
+    @Override
+    public BookSearchPageDto searchBooks(String query, int page, int size) {
+        List<String> words = Arrays.stream(query.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+
+        if (words.isEmpty()) {
+            return new BookSearchPageDto(List.of(), page, false);
+        }
+
+        String tsQuery = words.stream()
+                .map(word -> word.length() < searchProperties.getMinPrefixLength() ? word : word + ":*")
+                .collect(Collectors.joining(" & "));
+        List<BookDto> bookDtos = toDtos(bookRepository.search(tsQuery, String.join(" ", words),
+                searchProperties.getMaxCandidates(), size + 1, page * size));
+
+        return bookDtos.size() > size
+                ? new BookSearchPageDto(bookDtos.subList(0, size), page, true)
+                : new BookSearchPageDto(bookDtos, page, false);
     }
 
     /**
-     * Loan book by isbn.
+     * Loan book by isbn. The copy is taken by a single conditional UPDATE, so concurrent loans of the same book
+     * never take more copies than are available. Hot books are loaned from the in-memory escrow first.
      *
      * @param isbn isbn to search for
-     * @return DTO containing book details for the given isbn
+     * @return {@code true} if a copy was loaned, {@code false} if none is left
      * @throws ResourceNotFoundException if a book is not found
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
     public boolean loanBook(String isbn) {
-        Book book = bookRepository.findByIsbn(isbn).orElseThrow(
-                () -> new ResourceNotFoundException("Book", "ISBN", isbn)
-        );
+        if (hotInventory.tryTakeCopy(isbn)) {
+            return true;
+        }
+
+        return new TransactionTemplate(transactionManager).execute(
+                status -> changeAvailability(isbn, bookRepository.takeCopyReturningAvailable(isbn)));
+    }
+
+    /**
+     * Return book by isbn. The copy is put back by a single conditional UPDATE, never above the total copies.
+     * Hot books are returned to the in-memory escrow.
+     *
+     * @param isbn isbn to search for
+     * @return {@code true} if a copy was returned, {@code false} if all copies are already in
+     * @throws ResourceNotFoundException if a book is not found
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public boolean returnBook(String isbn) {
+        if (hotInventory.tryPutCopyBack(isbn)) {
+            return true;
+        }
+
+        return new TransactionTemplate(transactionManager).execute(
+                status -> changeAvailability(isbn, bookRepository.putCopyBackReturningAvailable(isbn)));
+    }
+
+    private boolean changeAvailability(String isbn, Optional<Integer> availableCopies) {
+        if (availableCopies.isEmpty()) {
+            if (!bookRepository.existsByIsbn(isbn)) {
+                throw new ResourceNotFoundException("Book", "ISBN", isbn);
+            }
 
-        if (book.getAvailableCopies() < 1) {
             return false;
         }
 
-        book.setAvailableCopies(book.getAvailableCopies() - 1);
+        bookChangedPublisher.publish(new BookChangedMsgDto(
+                isbn, BookChangedMsgDto.ChangeType.AVAILABILITY, availableCopies(isbn, availableCopies.get())));
 
         return true;
     }
 
     /**
-     * Return book by isbn.
+     * Loans one copy of each book in one statement. Hot books are loaned from the in-memory escrow first.
      *
-     * @param isbn isbn to search for
-     * @return DTO containing book details for the given isbn
-     * @throws ResourceNotFoundException if a book is not found
+     * @param isbns isbns of the books to loan
+     * @return isbns of the books a copy was loaned of, the others had no copy left or do not exist
      */
     @Transactional
     @Override
-    public boolean returnBook(String isbn) {
-        Book book = bookRepository.findByIsbn(isbn).orElseThrow(
-                () -> new ResourceNotFoundException("Book", "ISBN", isbn)
-        );
+    public Set<String> loanBooks(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return Set.of();
+        }
 
-        book.setAvailableCopies(book.getAvailableCopies() + 1);
+        Set<String> loaned = new HashSet<>();
+        List<String> fromTable = new ArrayList<>();
 
-        return true;
+        for (String isbn : isbns) {
+            if (hotInventory.tryTakeCopy(isbn)) {
+                loaned.add(isbn);
+            } else {
+                fromTable.add(isbn);
+            }
+        }
+
+        if (!fromTable.isEmpty()) {
+            loaned.addAll(sendAvailabilityChanged(bookRepository.takeCopies(fromTable)));
+        }
+
+        return loaned;
+    }
+
+    /**
+     * Returns one copy of each book in one statement. Hot books are returned to the in-memory escrow.
+     *
+     * @param isbns isbns of the books to return
+     * @return isbns of the books a copy was returned of
+     */
+    @Transactional
+    @Override
+    public Set<String> returnBooks(Collection<String> isbns) {
+        if (isbns.isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> returned = new HashSet<>();
+        List<String> toTable = new ArrayList<>();
+
+        for (String isbn : isbns) {
+            if (hotInventory.tryPutCopyBack(isbn)) {
+                returned.add(isbn);
+            } else {
+                toTable.add(isbn);
+            }
+        }
+
+        if (!toTable.isEmpty()) {
+            returned.addAll(sendAvailabilityChanged(bookRepository.putCopiesBack(toTable)));
+        }
+
+        return returned;
+    }
+
+    private Set<String> sendAvailabilityChanged(List<Object[]> changedBooks) {
+        Set<String> isbns = new HashSet<>();
+        Map<String, Integer> hotCopies = hotAvailableCopies(changedBooks.stream().map(book -> (String) book[0]));
+
+        for (Object[] changedBook : changedBooks) {
+            String isbn = (String) changedBook[0];
+            int availableCopies = hotCopies.getOrDefault(isbn, ((Number) changedBook[1]).intValue());
+            isbns.add(isbn);
+
+            bookChangedPublisher.publish(
+                    new BookChangedMsgDto(isbn, BookChangedMsgDto.ChangeType.AVAILABILITY, availableCopies));
+        }
+
+        return isbns;
+    }
+
+    /**
+     * Reserves one copy of the book for a checkout. Repeated commands of the same checkout return the
+     * outcome of the first one.
+     *
+     * @param checkoutId id of the checkout in the loans service
+     * @param isbn       isbn of the book to reserve
+     * @return DTO telling whether a copy was reserved
+     */
+    @Transactional
+    @Override
+    public CopyReservationResultDto reserveCopy(String checkoutId, String isbn) {
+        CopyReservation reservation = copyReservationRepository.findById(checkoutId).orElse(null);
+
+        if (reservation == null) {
+            boolean fromEscrow = hotInventory.tryTakeCopy(isbn);
+            boolean reserved = fromEscrow || bookRepository.takeCopy(isbn) == 1;
+
+            reservation = copyReservationRepository.save(new CopyReservation(checkoutId, isbn,
+                    reserved ? CopyReservation.ReservationStatus.RESERVED : CopyReservation.ReservationStatus.REJECTED));
+
+            if (reserved && !fromEscrow) {
+                sendAvailabilityChanged(isbn);
+            }
+        }
+
+        return new CopyReservationResultDto(checkoutId, isbn,
+                reservation.getStatus() == CopyReservation.ReservationStatus.RESERVED);
+    }
+
+    /**
+     * Releases the copy reserved for a checkout. A release that arrives before the reservation blocks
+     * the reservation from being made later.
+     *
+     * @param checkoutId id of the checkout in the loans service
+     * @param isbn       isbn of the reserved book
+     */
+    @Transactional
+    @Override
+    public void releaseCopy(String checkoutId, String isbn) {
+        CopyReservation reservation = copyReservationRepository.findById(checkoutId).orElse(null);
+
+        if (reservation == null) {
+            copyReservationRepository.save(
+                    new CopyReservation(checkoutId, isbn, CopyReservation.ReservationStatus.RELEASED));
+            return;
+        }
+
+        if (reservation.getStatus() == CopyReservation.ReservationStatus.RESERVED) {
+            reservation.setStatus(CopyReservation.ReservationStatus.RELEASED);
+
+            if (!hotInventory.tryPutCopyBack(isbn)) {
+                bookRepository.putCopyBack(isbn);
+                sendAvailabilityChanged(isbn);
+            }
+        }
     }
 
     /**
@@ -96,6 +319,35 @@ public class BookServiceImpl implements IBookService {
         return true;
     }
 
+    /**
+     * Saves a catalog of new books with batched inserts. Books whose isbn already exists are skipped.
+     *
+     * @param bookDtos book data transfer objects
+     * @return isbns of the imported books
+     */
+    @Transactional
+    @Override
+    public Set<String> importBooks(List<BookDto> bookDtos) {
+        Map<String, BookDto> newBooks = new LinkedHashMap<>();
+        bookDtos.forEach(bookDto -> newBooks.putIfAbsent(bookDto.getIsbn(), bookDto));
+
+        if (newBooks.isEmpty()) {
+            return Set.of();
+        }
+
+        bookRepository.findByIsbnIn(newBooks.keySet()).forEach(book -> newBooks.remove(book.getIsbn()));
+
+        List<Book> books = newBooks.values().stream()
+                .map(bookMapper::toEntity)
+                .toList();
+
+        bookRepository.saveAll(books);
+
+        log.debug("Imported {} of {} books", books.size(), bookDtos.size());
+
+        return newBooks.keySet();
+    }
+
     /**
      * Updates book details, excluding the isbn.
      *
@@ -115,6 +367,8 @@ public class BookServiceImpl implements IBookService {
 
         bookRepository.save(updatedBook);
 
+        sendBookChanged(updatedBook, BookChangedMsgDto.ChangeType.UPDATED);
+
         return true;
     }
 
@@ -133,6 +387,58 @@ public class BookServiceImpl implements IBookService {
         );
         bookRepository.delete(book);
 
+        sendBookChanged(book, BookChangedMsgDto.ChangeType.DELETED);
+
         return true;
     }
+
+    /**
+     * Publishes the availability of the book, unless it was deleted meanwhile: its deletion event is the last
+     * one consumers should see.
+     */
+    private void sendAvailabilityChanged(String isbn) {
+        bookRepository.findAvailableCopies(isbn).ifPresent(available -> bookChangedPublisher.publish(
+                new BookChangedMsgDto(isbn, BookChangedMsgDto.ChangeType.AVAILABILITY,
+                        availableCopies(isbn, available))));
+    }
+
+    private void sendBookChanged(Book book, BookChangedMsgDto.ChangeType change) {
+        bookChangedPublisher.publish(new BookChangedMsgDto(book.getIsbn(), change, book.getAvailableCopies()));
+    }
+
+    private BookDto toDto(Book book) {
+        BookDto bookDto = bookMapper.toDto(book);
+        bookDto.setAvailableCopies(availableCopies(book.getIsbn(), book.getAvailableCopies()));
+
+        return bookDto;
+    }
+
+    /**
+     * Maps books to DTOs, reading the available copies of all hot books among them with one query.
+     */
+    private List<BookDto> toDtos(List<Book> books) {
+        Map<String, Integer> hotCopies = hotAvailableCopies(books.stream().map(Book::getIsbn));
+
+        return books.stream()
+                .map(book -> {
+                    BookDto bookDto = bookMapper.toDto(book);
+                    bookDto.setAvailableCopies(hotCopies.getOrDefault(book.getIsbn(), book.getAvailableCopies()));
+                    return bookDto;
+                })
+                .toList();
+    }
+
+    private Map<String, Integer> hotAvailableCopies(Stream<String> isbns) {
+        List<String> hotIsbns = isbns.filter(hotInventory::isHot).toList();
+
+        return hotIsbns.isEmpty() ? Map.of() : hotInventory.availableCopies(hotIsbns);
+    }
+
+    /**
+     * @return available copies of the book given its copies in the books table; for hot books the copies held
+     * in the escrows are added, so every reader and event reports the same number
+     */
+    private int availableCopies(String isbn, int tableCopies) {
+        return hotInventory.isHot(isbn) ? hotInventory.availableCopies(isbn) : tableCopies;
+    }
 }
@@ -11,4 +11,46 @@ CREATE TABLE IF NOT EXISTS books
     created_by       VARCHAR(50)  NOT NULL,
     updated_at       TIMESTAMP,
     updated_by       VARCHAR(50)
-);
\ No newline at end of file
+);
+
+-- Ids come from a pooled sequence (50 ids per nextval) so that Hibernate can batch inserts.
+CREATE SEQUENCE IF NOT EXISTS books_seq INCREMENT BY 50;
+
+SELECT setval('books_seq', (SELECT MAX(id) FROM books))
+WHERE (SELECT MAX(id) FROM books) > (SELECT last_value FROM books_seq);
+
+ALTER TABLE books ALTER COLUMN id SET DEFAULT nextval('books_seq');
+
+CREATE TABLE IF NOT EXISTS copy_reservations
+(
+    checkout_id VARCHAR(36) PRIMARY KEY,
+    book_isbn   VARCHAR(13) NOT NULL,
+    status      VARCHAR(10) NOT NULL,
+    created_at  TIMESTAMP   NOT NULL,
+    created_by  VARCHAR(50) NOT NULL,
+    updated_at  TIMESTAMP,
+    updated_by  VARCHAR(50)
+);
+
+-- Copies of hot books held in memory by a replica, see HotInventory
+CREATE TABLE IF NOT EXISTS inventory_escrows
+(
+    replica_id  VARCHAR(100) NOT NULL,
+    isbn        VARCHAR(13)  NOT NULL,
+    held        INTEGER      NOT NULL,
+    lease_until TIMESTAMP    NOT NULL,
+    PRIMARY KEY (replica_id, isbn)
+);
+
+-- Catalog search: ranked full-text matching with prefixes over title, author and genre, plus trigram word
+-- similarity over title and author for typos. The 'simple' configuration does not stem, the catalog is multilingual.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(author, '')), 'B') ||
+    setweight(to_tsvector('simple', coalesce(genre, '')), 'C')) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING gin (search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_books_title_author_trgm ON books USING gin ((title || ' ' || author) gin_trgm_ops);
@@ -0,0 +1,214 @@
+package com.bekassyl.books.inventory;
+
+import com.bekassyl.books.config.HotInventoryProperties;
+import com.bekassyl.books.functions.BookChangedPublisher;
+import com.bekassyl.books.repository.InventoryEscrowRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that the copies of the books table and the escrows add up to the copies not on loan, whatever happens
+ * to the escrows between two flushes. The books table and {@code inventory_escrows} are kept in memory.
+ */
+class HotInventoryTest {
+    private static final String ISBN = "9780141182636";
+
+    private final Tables tables = new Tables();
+
+    @Test
+    void givesBackTheCopiesLeftInMemoryWhenTheEscrowExpired() {
+        tables.addBook(ISBN, 100);
+        HotInventory hotInventory = open();
+
+        assertEquals(50, tables.available(ISBN));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(hotInventory.tryTakeCopy(ISBN));
+        }
+
+        tables.expireEscrows();
+        hotInventory.flush();
+
+        assertEquals(97, tables.available(ISBN) + tables.held(ISBN));
+        assertEquals(97, hotInventory.availableCopies(ISBN));
+    }
+
+    @Test
+    void givesBackTheCopiesLeftInMemoryOnShutdown() {
+        tables.addBook(ISBN, 100);
+        HotInventory hotInventory = open();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(hotInventory.tryTakeCopy(ISBN));
+        }
+        assertTrue(hotInventory.tryPutCopyBack(ISBN));
+
+        hotInventory.close();
+
+        assertEquals(98, tables.available(ISBN));
+        assertEquals(0, tables.held(ISBN));
+    }
+
+    @Test
+    void neverHoldsMoreThanTheTotalCopies() {
+        tables.addBook(ISBN, 5);
+        HotInventory hotInventory = open();
+
+        assertFalse(hotInventory.tryPutCopyBack(ISBN));
+
+        assertTrue(hotInventory.tryTakeCopy(ISBN));
+        assertTrue(hotInventory.tryPutCopyBack(ISBN));
+        assertFalse(hotInventory.tryPutCopyBack(ISBN));
+    }
+
+    private HotInventory open() {
+        HotInventoryProperties properties = new HotInventoryProperties();
+        properties.setEnabled(true);
+        properties.setIsbns(Set.of(ISBN));
+        properties.setLeaseTtl(Duration.ofMinutes(1));
+
+        HotInventory hotInventory = new HotInventory(tables, new NoOpTransactionManager(),
+                mock(BookChangedPublisher.class), properties, "books");
+        hotInventory.open();
+
+        return hotInventory;
+    }
+
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    private static final class Tables extends InventoryEscrowRepository {
+        private final Map<String, int[]> books = new HashMap<>();
+        private final Map<String, Integer> escrows = new HashMap<>();
+        private final Map<String, Boolean> expired = new HashMap<>();
+
+        private Tables() {
+            super(null);
+        }
+
+        void addBook(String isbn, int copies) {
+            books.put(isbn, new int[]{copies, copies});
+        }
+
+        int available(String isbn) {
+            return books.get(isbn)[0];
+        }
+
+        int held(String isbn) {
+            return escrows.entrySet().stream()
+                    .filter(escrow -> escrow.getKey().endsWith("/" + isbn))
+                    .mapToInt(Map.Entry::getValue)
+                    .sum();
+        }
+
+        void expireEscrows() {
+            expired.replaceAll((key, value) -> true);
+        }
+
+        @Override
+        public int takeCopies(String isbn, int count) {
+            int[] book = books.get(isbn);
+            int taken = Math.min(book[0], count);
+            book[0] -= taken;
+            return taken;
+        }
+
+        @Override
+        public void putCopiesBack(String isbn, int count) {
+            adjustCopies(isbn, count);
+        }
+
+        @Override
+        public void insertHeld(String replicaId, String isbn, int held, Duration leaseTtl) {
+            escrows.put(replicaId + "/" + isbn, held);
+            expired.put(replicaId + "/" + isbn, false);
+        }
+
+        @Override
+        public boolean updateHeld(String replicaId, String isbn, int held, Duration leaseTtl) {
+            String key = replicaId + "/" + isbn;
+
+            if (!escrows.containsKey(key) || expired.get(key)) {
+                return false;
+            }
+
+            escrows.put(key, held);
+            return true;
+        }
+
+        @Override
+        public int renew(String replicaId, Duration leaseTtl) {
+            return (int) escrows.keySet().stream()
+                    .filter(key -> key.startsWith(replicaId + "/") && !expired.get(key))
+                    .count();
+        }
+
+        @Override
+        public Integer deleteHeld(String replicaId, String isbn) {
+            expired.remove(replicaId + "/" + isbn);
+            return escrows.remove(replicaId + "/" + isbn);
+        }
+
+        @Override
+        public void adjustCopies(String isbn, int count) {
+            int[] book = books.get(isbn);
+            book[0] = Math.min(book[1], Math.max(0, book[0] + count));
+        }
+
+        @Override
+        public int releaseExpired() {
+            List<String> keys = expired.entrySet().stream().filter(Map.Entry::getValue).map(Map.Entry::getKey).toList();
+
+            for (String key : keys) {
+                adjustCopies(key.substring(key.indexOf('/') + 1), escrows.remove(key));
+                expired.remove(key);
+            }
+
+            return keys.size();
+        }
+
+        @Override
+        public Map<String, Integer> findTotalCopies(Collection<String> isbns) {
+            Map<String, Integer> totals = new HashMap<>();
+            isbns.stream().filter(books::containsKey).forEach(isbn -> totals.put(isbn, books.get(isbn)[1]));
+            return totals;
+        }
+
+        @Override
+        public Map<String, Integer> findAvailableCopies(Collection<String> isbns) {
+            Map<String, Integer> available = new HashMap<>();
+            isbns.stream().filter(books::containsKey)
+                    .forEach(isbn -> available.put(isbn, available(isbn) + held(isbn)));
+            return available;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.bekassyl.books.repository;
+
+import com.bekassyl.books.audit.AuditAwareImpl;
+import com.bekassyl.books.entity.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares inserting a catalog row by row (one round trip per book, as with IDENTITY ids) with the batched
+ * insert used by the catalog import. Runs against the configured PostgreSQL database and rolls back.
+ * Run with {@code mvn test -Dtest=BookImportBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=5000]}.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BookImportBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 5000);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void importBooks() {
+        long rowByRow = measure(() -> books(0).forEach(book -> bookRepository.saveAndFlush(book)));
+        long batched = measure(() -> bookRepository.saveAll(books(ROWS)));
+
+        report("row by row", rowByRow);
+        report("batched", batched);
+    }
+
+    private long measure(Runnable insert) {
+        long start = System.nanoTime();
+        insert.run();
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+
+        entityManager.clear();
+
+        return elapsed;
+    }
+
+    private List<Book> books(int offset) {
+        List<Book> books = new ArrayList<>(ROWS);
+
+        for (int i = 0; i < ROWS; i++) {
+            Book book = new Book();
+            book.setTitle("Benchmark book " + i);
+            book.setAuthor("Benchmark author");
+            book.setGenre("Benchmark");
+            book.setIsbn(String.format("999%010d", offset + i));
+            book.setTotalCopies(10);
+            book.setAvailableCopies(10);
+            books.add(book);
+        }
+
+        return books;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("catalog import, %s: %d rows in %d ms, %.0f rows/sec%n",
+                name, ROWS, nanos / 1_000_000, ROWS * 1e9 / nanos);
+    }
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Book.class)
+    @EnableJpaRepositories(basePackageClasses = BookRepository.class)
+    @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
+    @Import(AuditAwareImpl.class)
+    static class BenchmarkConfiguration {
+    }
+}
@@ -0,0 +1,159 @@
+package com.bekassyl.books.repository;
+
+import com.bekassyl.books.audit.AuditAwareImpl;
+import com.bekassyl.books.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Hammers one hot ISBN from many threads, comparing the read-modify-write loan (load the book, change
+ * {@code availableCopies}, rely on dirty checking) with the single conditional UPDATE, and checks the final
+ * counts. Runs against the configured PostgreSQL database and commits, the book is deleted afterwards.
+ * Run with {@code mvn test -Dtest=BookInventoryContentionBenchmarkTest -Dbenchmark=true
+ * [-Dbenchmark.threads=32] [-Dbenchmark.attempts=200]}.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BookInventoryContentionBenchmarkTest {
+    private static final String ISBN = "9990000000000";
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 32);
+    private static final int ATTEMPTS = Integer.getInteger("benchmark.attempts", 200);
+    private static final int COPIES = THREADS * ATTEMPTS / 2;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void createBook() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        bookRepository.findByIsbn(ISBN).ifPresent(bookRepository::delete);
+
+        Book book = new Book();
+        book.setTitle("Hot book");
+        book.setAuthor("Benchmark author");
+        book.setGenre("Benchmark");
+        book.setIsbn(ISBN);
+        book.setTotalCopies(COPIES);
+        book.setAvailableCopies(COPIES);
+        bookRepository.save(book);
+    }
+
+    @AfterEach
+    void deleteBook() {
+        bookRepository.findByIsbn(ISBN).ifPresent(bookRepository::delete);
+    }
+
+    @Test
+    void readModifyWrite() throws Exception {
+        int loaned = hammer("read-modify-write loan", () -> transactionTemplate.execute(status -> {
+            Book book = bookRepository.findByIsbn(ISBN).orElseThrow();
+
+            if (book.getAvailableCopies() < 1) {
+                return false;
+            }
+
+            book.setAvailableCopies(book.getAvailableCopies() - 1);
+            return true;
+        }));
+
+        int available = available();
+        System.out.printf("read-modify-write loan: %d copies loaned, %d left, %d updates lost%n",
+                loaned, available, loaned - (COPIES - available));
+    }
+
+    @Test
+    void conditionalUpdate() throws Exception {
+        int loaned = hammer("conditional update loan", () -> transactionTemplate.execute(
+                status -> bookRepository.takeCopyReturningAvailable(ISBN).isPresent()));
+
+        assertEquals(COPIES, loaned);
+        assertEquals(0, available());
+
+        int returned = hammer("conditional update return", () -> transactionTemplate.execute(
+                status -> bookRepository.putCopyBackReturningAvailable(ISBN).isPresent()));
+
+        assertEquals(COPIES, returned);
+        assertEquals(COPIES, available());
+    }
+
+    /**
+     * Runs {@code ATTEMPTS} operations on each of {@code THREADS} threads.
+     *
+     * @return number of successful operations
+     */
+    private int hammer(String name, BooleanSupplier operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                int succeeded = 0;
+
+                for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+                    if (operation.getAsBoolean()) {
+                        succeeded++;
+                    }
+                }
+
+                return succeeded;
+            }));
+        }
+
+        int succeeded = 0;
+
+        for (Future<Integer> result : results) {
+            succeeded += result.get();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        System.out.printf("%s: %d threads x %d calls in %d ms, %.0f calls/sec%n",
+                name, THREADS, ATTEMPTS, elapsed / 1_000_000, THREADS * ATTEMPTS * 1e9 / elapsed);
+
+        return succeeded;
+    }
+
+    private int available() {
+        return bookRepository.findAvailableCopies(ISBN).orElseThrow();
+    }
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Book.class)
+    @EnableJpaRepositories(basePackageClasses = BookRepository.class)
+    @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
+    @Import(AuditAwareImpl.class)
+    static class BenchmarkConfiguration {
+    }
+}
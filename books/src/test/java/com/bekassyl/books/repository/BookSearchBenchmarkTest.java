@@ -0,0 +1,100 @@
+package com.bekassyl.books.repository;
+
+import com.bekassyl.books.audit.AuditAwareImpl;
+import com.bekassyl.books.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares ranking every book matching a broad prefix before the page is cut with ranking only the first
+ * {@code books.search.max-candidates} matches. All catalog rows share the searched prefix, as a short prefix of a
+ * common word would. Runs against the configured PostgreSQL database and rolls back.
+ * Run with {@code mvn test -Dtest=BookSearchBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=50000]}.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BookSearchBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 50_000);
+    private static final int CANDIDATES = 1000;
+    private static final int PAGE_SIZE = 20;
+    private static final int RUNS = 20;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void createBooks() {
+        List<Book> books = new ArrayList<>(ROWS);
+
+        for (int i = 0; i < ROWS; i++) {
+            Book book = new Book();
+            book.setTitle("Harbor chronicle " + i);
+            book.setAuthor("Benchmark author");
+            book.setGenre("Benchmark");
+            book.setIsbn(String.format("999%010d", i));
+            book.setTotalCopies(1);
+            book.setAvailableCopies(1);
+            books.add(book);
+        }
+
+        bookRepository.saveAll(books);
+        entityManager.flush();
+        entityManager.clear();
+        entityManager.getEntityManager().createNativeQuery("ANALYZE books").executeUpdate();
+    }
+
+    @Test
+    void searchBroadPrefix() {
+        long allMatches = measure(Integer.MAX_VALUE);
+        long capped = measure(CANDIDATES);
+
+        report("all matches ranked", allMatches);
+        report(CANDIDATES + " candidates ranked", capped);
+    }
+
+    private long measure(int candidates) {
+        assertEquals(PAGE_SIZE + 1, bookRepository.search("har:*", "har", candidates, PAGE_SIZE + 1, 0).size());
+        entityManager.clear();
+
+        long start = System.nanoTime();
+
+        for (int run = 0; run < RUNS; run++) {
+            bookRepository.search("har:*", "har", candidates, PAGE_SIZE + 1, 0);
+            entityManager.clear();
+        }
+
+        return (System.nanoTime() - start) / RUNS;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("book search over %d matching rows, %s: %.1f ms per first page%n",
+                ROWS, name, nanos / 1e6);
+    }
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Book.class)
+    @EnableJpaRepositories(basePackageClasses = BookRepository.class)
+    @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
+    @Import(AuditAwareImpl.class)
+    static class BenchmarkConfiguration {
+    }
+}
@@ -1,5 +1,20 @@
 package com.bekassyl.loans;
 
+import com.bekassyl.loans.config.CheckoutProperties;
+import com.bekassyl.loans.config.ConcurrencyLimitProperties;
+import com.bekassyl.loans.config.DueDateReminderProperties;
+import com.bekassyl.loans.config.FeignTransportProperties;
+import com.bekassyl.loans.config.IdempotencyProperties;
+import com.bekassyl.loans.config.LastKnownGoodProperties;
+import com.bekassyl.loans.config.LoanArchiveProperties;
+import com.bekassyl.loans.config.LoanExportProperties;
+import com.bekassyl.loans.config.LoanSnapshotProperties;
+import com.bekassyl.loans.config.LookupCacheProperties;
+import com.bekassyl.loans.config.OutboxProperties;
+import com.bekassyl.loans.config.OverdueSweeperProperties;
+import com.bekassyl.loans.config.RemoteCallsProperties;
+import com.bekassyl.loans.config.ReplicaProperties;
+import com.bekassyl.loans.config.RpcProperties;
 import com.bekassyl.loans.dto.response.LoanInfoResponseDto;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Contact;
@@ -9,9 +24,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableFeignClients
-@EnableConfigurationProperties(LoanInfoResponseDto.class)
+@EnableConfigurationProperties({LoanInfoResponseDto.class, RemoteCallsProperties.class, LookupCacheProperties.class,
+        LoanExportProperties.class, LoanSnapshotProperties.class, OverdueSweeperProperties.class,
+        OutboxProperties.class, CheckoutProperties.class, IdempotencyProperties.class, ReplicaProperties.class,
+        FeignTransportProperties.class, ConcurrencyLimitProperties.class, LastKnownGoodProperties.class,
+        RpcProperties.class, LoanArchiveProperties.class, DueDateReminderProperties.class})
+@EnableScheduling
 @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
 @OpenAPIDefinition(
         info = @Info(
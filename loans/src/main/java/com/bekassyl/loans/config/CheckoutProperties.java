@@ -0,0 +1,27 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.checkout")
+public class CheckoutProperties {
+    /**
+     * How long a checkout waits for the books service before it is timed out and its copy released.
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * Pause between two runs of the job that times out checkouts.
+     */
+    private Duration expiryDelay = Duration.ofSeconds(5);
+
+    /**
+     * Number of checkouts timed out by one transaction.
+     */
+    private int expiryBatchSize = 100;
+}
@@ -0,0 +1,33 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the adaptive concurrency limit each downstream service gets.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.concurrency-limit")
+public class ConcurrencyLimitProperties {
+    private boolean enabled = true;
+
+    private int initialLimit = 20;
+
+    private int minLimit = 2;
+
+    private int maxLimit = 200;
+
+    /**
+     * Factor the limit is multiplied by after a slow or failed call.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Calls slower than this count as a sign of overload, like failed calls.
+     */
+    private Duration latencyThreshold = Duration.ofMillis(500);
+}
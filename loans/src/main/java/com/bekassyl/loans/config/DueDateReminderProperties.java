@@ -0,0 +1,56 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.Period;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.reminders")
+public class DueDateReminderProperties {
+    private boolean enabled = true;
+
+    /**
+     * Number of days before the return date the member is reminded.
+     */
+    private int daysBefore = 1;
+
+    /**
+     * Time of day reminders are sent at.
+     */
+    private LocalTime sendAt = LocalTime.of(9, 0);
+
+    /**
+     * Loans due within this period from today are kept in the timing wheel. The wheel is reloaded once a day.
+     */
+    private Period lookahead = Period.ofDays(14);
+
+    /**
+     * Resolution of the timing wheel, also the pause between two ticks.
+     */
+    private Duration tick = Duration.ofMinutes(1);
+
+    /**
+     * Number of slots of each level of the timing wheel.
+     */
+    private int wheelSize = 60;
+
+    /**
+     * Pause between two reads of the loans changed since the wheel was loaded.
+     */
+    private Duration refreshInterval = Duration.ofMinutes(5);
+
+    /**
+     * Number of loans read or reminded by one statement.
+     */
+    private int batchSize = 500;
+
+    /**
+     * How long a replica keeps the reminder lease without renewing it.
+     */
+    private Duration leaseTtl = Duration.ofMinutes(5);
+}
@@ -0,0 +1,66 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.feign-transport")
+public class FeignTransportProperties {
+    /**
+     * Pool settings of the Feign clients without their own entry in {@code clients}.
+     */
+    private Pool defaults = new Pool();
+
+    /**
+     * Pool settings per Feign client name, e.g. {@code books}; they replace the defaults.
+     */
+    private Map<String, Pool> clients = new HashMap<>();
+
+    public Pool forClient(String clientName) {
+        return clients.getOrDefault(clientName, defaults);
+    }
+
+    @Getter
+    @Setter
+    public static class Pool {
+        /**
+         * Connections kept open to all instances of the target together.
+         */
+        private int maxConnections = 100;
+
+        /**
+         * Connections kept open to one instance of the target.
+         */
+        private int maxConnectionsPerInstance = 50;
+
+        private Duration connectTimeout = Duration.ofSeconds(1);
+
+        private Duration readTimeout = Duration.ofSeconds(3);
+
+        /**
+         * How long a request waits for a free pooled connection before failing.
+         */
+        private Duration leaseTimeout = Duration.ofMillis(500);
+
+        /**
+         * Idle connections are re-checked before reuse after this long.
+         */
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+        /**
+         * Idle connections are closed after this long.
+         */
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Connections are not reused after this long, so that new instances get traffic.
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,32 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.idempotency")
+public class IdempotencyProperties {
+    /**
+     * How long the response of a completed request is replayed to retries.
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * How long a key stays claimed by a request that has not finished, e.g. because its replica crashed.
+     */
+    private Duration inProgressTtl = Duration.ofMinutes(1);
+
+    /**
+     * Number of completed responses kept in memory in front of the table.
+     */
+    private long cacheMaxSize = 10_000;
+
+    /**
+     * Pause between two runs of the job that deletes expired keys.
+     */
+    private Duration cleanupDelay = Duration.ofHours(1);
+}
@@ -0,0 +1,27 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.last-known-good")
+public class LastKnownGoodProperties {
+    /**
+     * Books and members each kept in memory.
+     */
+    private long maxSize = 100_000;
+
+    /**
+     * Details older than this are not served any more.
+     */
+    private Duration maxAge = Duration.ofDays(7);
+
+    /**
+     * Whether the details are also stored in the database, so that they survive restarts.
+     */
+    private boolean persist = false;
+}
@@ -0,0 +1,50 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.Period;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.archive")
+public class LoanArchiveProperties {
+    /**
+     * Whether returned loans are archived. Archived loans are still returned by the loan history endpoints and
+     * the export until their partition is detached.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Pause between two archival runs.
+     */
+    private Duration delay = Duration.ofHours(1);
+
+    /**
+     * How long returned loans stay in the loans table after their return date.
+     */
+    private Period returnedRetention = Period.ofDays(90);
+
+    /**
+     * Number of loans moved to the archive by one statement.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Number of chunks one run moves before handing over to the next run.
+     */
+    private int maxChunksPerRun = 100;
+
+    /**
+     * Monthly archive partitions older than this are detached into standalone tables named
+     * {@code <partition>_detached_<timestamp>}, ready to be dumped and dropped. Nothing is detached when unset.
+     */
+    private Period detachAfter;
+
+    /**
+     * How long a replica keeps the archival lease without renewing it.
+     */
+    private Duration leaseTtl = Duration.ofMinutes(10);
+}
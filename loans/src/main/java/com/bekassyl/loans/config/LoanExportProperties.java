@@ -0,0 +1,28 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.export")
+public class LoanExportProperties {
+    /**
+     * Number of rows the database cursor returns per round trip.
+     */
+    private int fetchSize = 500;
+
+    /**
+     * Number of loans enriched with one bulk books/members lookup and flushed to the client together.
+     */
+    private int batchSize = 200;
+
+    /**
+     * How long one export may stream before the request is timed out. Applies to the export only, other async
+     * requests keep the default timeout.
+     */
+    private Duration timeout = Duration.ofMinutes(10);
+}
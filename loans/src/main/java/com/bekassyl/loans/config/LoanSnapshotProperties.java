@@ -0,0 +1,38 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.snapshot")
+public class LoanSnapshotProperties {
+    /**
+     * Whether loans created before snapshots existed are filled in by the background job.
+     */
+    private boolean backfillEnabled = true;
+
+    /**
+     * Pause between two backfill batches.
+     */
+    private Duration backfillDelay = Duration.ofMinutes(1);
+
+    /**
+     * Number of loans filled in by one backfill batch.
+     */
+    private int backfillBatchSize = 200;
+
+    /**
+     * How long one replica holds the backfill lease without renewing it.
+     */
+    private Duration backfillLeaseTtl = Duration.ofMinutes(5);
+
+    /**
+     * Whether snapshots of existing loans follow later edits of the book or member. When disabled a snapshot
+     * keeps the details as they were when the loan was created.
+     */
+    private boolean refreshOnChange = false;
+}
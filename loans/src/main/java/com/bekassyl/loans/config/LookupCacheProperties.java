@@ -0,0 +1,22 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.lookup-cache")
+public class LookupCacheProperties {
+    private Spec books = new Spec();
+    private Spec members = new Spec();
+
+    @Getter
+    @Setter
+    public static class Spec {
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+}
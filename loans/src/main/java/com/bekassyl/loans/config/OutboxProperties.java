@@ -0,0 +1,27 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.outbox")
+public class OutboxProperties {
+    /**
+     * Pause between two relay runs when the outbox is drained.
+     */
+    private Duration relayDelay = Duration.ofMillis(200);
+
+    /**
+     * Number of events published and acknowledged together.
+     */
+    private int batchSize = 500;
+
+    /**
+     * How long the relay waits for the broker to acknowledge a batch before retrying it.
+     */
+    private Duration sendTimeout = Duration.ofSeconds(10);
+}
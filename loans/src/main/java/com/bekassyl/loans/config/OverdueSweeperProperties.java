@@ -0,0 +1,34 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.overdue-sweeper")
+public class OverdueSweeperProperties {
+    private boolean enabled = true;
+
+    /**
+     * Pause between two sweeps.
+     */
+    private Duration delay = Duration.ofMinutes(5);
+
+    /**
+     * Number of loans marked overdue by one UPDATE statement.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Number of chunks one sweep processes before handing over to the next run.
+     */
+    private int maxChunksPerRun = 100;
+
+    /**
+     * How long a replica keeps the sweeper lease without renewing it.
+     */
+    private Duration leaseTtl = Duration.ofMinutes(2);
+}
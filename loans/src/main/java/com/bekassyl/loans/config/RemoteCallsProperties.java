@@ -0,0 +1,17 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.remote-calls")
+public class RemoteCallsProperties {
+    private int corePoolSize = 16;
+    private int maxPoolSize = 64;
+    private int queueCapacity = 256;
+    private Duration deadline = Duration.ofSeconds(3);
+}
@@ -0,0 +1,55 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.replicas")
+public class ReplicaProperties {
+    /**
+     * Whether read-only transactions are routed to the replicas.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Replica nodes, each with its own connection pool.
+     */
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * Largest replication lag a replica may have and still serve reads. No fencing when unset.
+     */
+    private Duration maxLag;
+
+    /**
+     * Pause between two lag checks of the replicas.
+     */
+    private Duration lagCheckDelay = Duration.ofSeconds(5);
+
+    /**
+     * Maximum size of the connection pool of each replica.
+     */
+    private int maximumPoolSize = 10;
+
+    @Getter
+    @Setter
+    public static class Node {
+        private String url;
+
+        /**
+         * Defaults to the primary username.
+         */
+        private String username;
+
+        /**
+         * Defaults to the primary password.
+         */
+        private String password;
+    }
+}
@@ -0,0 +1,19 @@
+package com.bekassyl.loans.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loans.rpc")
+public class RpcProperties {
+    /**
+     * Encoding of the request and response bodies of the calls to the books and members services.
+     */
+    private Encoding encoding = Encoding.JSON;
+
+    public enum Encoding {
+        JSON, CBOR
+    }
+}
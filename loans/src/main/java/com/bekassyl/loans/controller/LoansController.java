@@ -1,10 +1,17 @@
 package com.bekassyl.loans.controller;
 
+import com.bekassyl.loans.config.LoanExportProperties;
 import com.bekassyl.loans.dto.*;
+import com.bekassyl.loans.dto.request.BulkLoanRequestDto;
 import com.bekassyl.loans.dto.request.LoanRequestDto;
+import com.bekassyl.loans.dto.response.BulkLoanResponseDto;
+import com.bekassyl.loans.dto.response.CheckoutResponseDto;
 import com.bekassyl.loans.dto.response.ErrorResponseDto;
 import com.bekassyl.loans.dto.response.LoanDetailsResponseDto;
 import com.bekassyl.loans.dto.response.LoanInfoResponseDto;
+import com.bekassyl.loans.dto.response.LoanPageResponseDto;
+import com.bekassyl.loans.entity.Loan;
+import com.bekassyl.loans.idempotency.IdempotencyStore;
 import com.bekassyl.loans.service.ILoanService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,19 +19,30 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 @Tag(
         name = "CRUD REST APIs for Loans in JaryqLibrary",
@@ -36,18 +54,30 @@ import java.util.Map;
 @Validated
 @Slf4j
 public class LoansController {
+    private static final String EXPORT_TIMEOUT_INTERCEPTOR = LoansController.class.getName() + ".exportTimeout";
+
     private final ILoanService loanService;
     private final LoanInfoResponseDto loanInfoResponseDto;
+    private final IdempotencyStore idempotencyStore;
+    private final LoanExportProperties exportProperties;
 
     @Operation(
             summary = "Get Loan Details By Book Id REST API",
-            description = "REST API to get Loan details based on a book id"
+            description = "REST API to get one page of Loan details based on a book id, newest loans first. " +
+                    "Pass the nextCursor of a page to get the following one"
     )
     @ApiResponses({
             @ApiResponse(
                     responseCode = "200",
                     description = "HTTP Status OK"
             ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "HTTP Status Bad Request",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
             @ApiResponse(
                     responseCode = "500",
                     description = "HTTP Status Internal Server Error",
@@ -57,28 +87,44 @@ public class LoansController {
             )
     })
     @GetMapping("/fetch-by-book")
-    public ResponseEntity<List<LoanDto>> fetchLoanDetailsByBookIsbn(
+    public ResponseEntity<LoanPageResponseDto> fetchLoanDetailsByBookIsbn(
             @RequestParam("bookIsbn")
-            @Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String bookIsbn)
+            @Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String bookIsbn,
+            @RequestParam(value = "status", required = false) Loan.LoanStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20")
+            @Min(value = 1, message = "Page size must be at least 1")
+            @Max(value = 100, message = "Page size must not exceed 100") int size)
     {
         log.debug("fetchLoanDetailsByBookIsbn() method starts");
 
-        List<LoanDto> loanDtoList = loanService.fetchLoansByBookIsbn(bookIsbn);
+        LoanPageResponseDto loanPage = loanService.fetchLoansByBookIsbn(
+                bookIsbn, new LoanFilter(status, from, to), cursor, size);
 
         log.debug("fetchLoanDetailsByBookIsbn() method ends");
 
-        return ResponseEntity.ok(loanDtoList);
+        return ResponseEntity.ok(loanPage);
     }
 
     @Operation(
             summary = "Get Loan Details By Member Id REST API",
-            description = "REST API to get Loan details based on a member id"
+            description = "REST API to get one page of Loan details based on a member id, newest loans first. " +
+                    "Pass the nextCursor of a page to get the following one"
     )
     @ApiResponses({
             @ApiResponse(
                     responseCode = "200",
                     description = "HTTP Status OK"
             ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "HTTP Status Bad Request",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
             @ApiResponse(
                     responseCode = "500",
                     description = "HTTP Status Internal Server Error",
@@ -88,20 +134,89 @@ public class LoansController {
             )
     })
     @GetMapping("/fetch-by-member")
-    public ResponseEntity<List<LoanDto>> fetchLoanDetailsByMemberIin(
+    public ResponseEntity<LoanPageResponseDto> fetchLoanDetailsByMemberIin(
             @RequestParam("memberIin")
-            @Size(max = 12, message = "IIN must not exceed 12 characters") String memberIin)
+            @Size(max = 12, message = "IIN must not exceed 12 characters") String memberIin,
+            @RequestParam(value = "status", required = false) Loan.LoanStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20")
+            @Min(value = 1, message = "Page size must be at least 1")
+            @Max(value = 100, message = "Page size must not exceed 100") int size)
     {
         log.debug("fetchLoanDetailsByMemberIin() method starts");
 
-        List<LoanDto> loanDtoList = loanService.fetchLoansByMemberIin(memberIin);
+        LoanPageResponseDto loanPage = loanService.fetchLoansByMemberIin(
+                memberIin, new LoanFilter(status, from, to), cursor, size);
 
         log.debug("fetchLoanDetailsByMemberIin() method ends");
 
-        return ResponseEntity.ok(loanDtoList);
+        return ResponseEntity.ok(loanPage);
     }
 
 
+    @Operation(
+            summary = "Export Loans REST API",
+            description = "REST API to export Loan details as newline-delimited JSON, newest loans first " +
+                    "(by loan date for a book or member, by id otherwise). " +
+                    "Loans are streamed as they are read, optionally enriched with book and member details"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "HTTP Status Bad Request",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportLoans(
+            @RequestParam(value = "bookIsbn", required = false)
+            @Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String bookIsbn,
+            @RequestParam(value = "memberIin", required = false)
+            @Size(max = 12, message = "IIN must not exceed 12 characters") String memberIin,
+            @RequestParam(value = "status", required = false) Loan.LoanStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd-MM-yyyy") LocalDate to,
+            @RequestParam(value = "enrich", defaultValue = "false") boolean enrich,
+            HttpServletRequest request)
+    {
+        log.debug("exportLoans() method starts");
+
+        long timeout = exportProperties.getTimeout().toMillis();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(EXPORT_TIMEOUT_INTERCEPTOR,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        if (webRequest instanceof AsyncWebRequest asyncWebRequest) {
+                            asyncWebRequest.setTimeout(timeout);
+                        }
+                    }
+                });
+
+        LoanFilter filter = new LoanFilter(status, from, to);
+        StreamingResponseBody body = out -> loanService.exportLoans(bookIsbn, memberIin, filter, enrich, out);
+
+        log.debug("exportLoans() method ends");
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @Operation(
             summary = "Create Loan REST API",
             description = "REST API to create a new Loan in JaryqLibrary"
@@ -120,15 +235,163 @@ public class LoansController {
     })
     @PostMapping("/create")
     public ResponseEntity<LoanDetailsResponseDto> createLoan(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Size(max = 100, message = "Idempotency-Key must not exceed 100 characters") String idempotencyKey,
             @RequestBody @Valid LoanRequestDto requestDto
     ) {
         log.debug("createLoan() method starts");
 
-        LoanDetailsResponseDto responseDto = loanService.createLoan(requestDto);
+        ResponseEntity<LoanDetailsResponseDto> response = idempotencyStore.execute(
+                idempotencyKey, "create", requestDto, LoanDetailsResponseDto.class,
+                () -> ResponseEntity.ok(loanService.createLoan(requestDto)));
 
         log.debug("createLoan() method ends");
 
-        return ResponseEntity.ok(responseDto);
+        return response;
+    }
+
+
+    @Operation(
+            summary = "Checkout REST API",
+            description = "REST API to start an asynchronous checkout in JaryqLibrary. The loan is created once the " +
+                    "books service has reserved a copy; poll the returned location for the outcome"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "HTTP Status ACCEPTED"),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "HTTP Status Bad Request",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/checkout")
+    public ResponseEntity<CheckoutResponseDto> checkout(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Size(max = 100, message = "Idempotency-Key must not exceed 100 characters") String idempotencyKey,
+            @RequestBody @Valid LoanRequestDto requestDto
+    ) {
+        log.debug("checkout() method starts");
+
+        ResponseEntity<CheckoutResponseDto> response = idempotencyStore.execute(
+                idempotencyKey, "checkout", requestDto, CheckoutResponseDto.class, () -> {
+                    CheckoutResponseDto responseDto = loanService.startCheckout(requestDto);
+
+                    return ResponseEntity
+                            .accepted()
+                            .location(URI.create("/loans/api/checkout/" + responseDto.getCheckoutId()))
+                            .body(responseDto);
+                });
+
+        log.debug("checkout() method ends");
+
+        return response;
+    }
+
+    @Operation(
+            summary = "Get Checkout Status REST API",
+            description = "REST API to get the state of an asynchronous checkout"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "HTTP Status Not Found",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @GetMapping("/checkout/{checkoutId}")
+    public ResponseEntity<CheckoutResponseDto> fetchCheckout(@PathVariable("checkoutId") String checkoutId) {
+        return ResponseEntity.ok(loanService.fetchCheckout(checkoutId));
+    }
+
+
+    @Operation(
+            summary = "Create Loans In Bulk REST API",
+            description = "REST API to loan several books to one member in JaryqLibrary, reporting the outcome for each book"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/bulk-create")
+    public ResponseEntity<BulkLoanResponseDto> bulkCreateLoans(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Size(max = 100, message = "Idempotency-Key must not exceed 100 characters") String idempotencyKey,
+            @RequestBody @Valid BulkLoanRequestDto requestDto
+    ) {
+        log.debug("bulkCreateLoans() method starts");
+
+        ResponseEntity<BulkLoanResponseDto> response = idempotencyStore.execute(
+                idempotencyKey, "bulk-create", requestDto, BulkLoanResponseDto.class,
+                () -> ResponseEntity.ok(loanService.bulkCreateLoans(requestDto)));
+
+        log.debug("bulkCreateLoans() method ends");
+
+        return response;
+    }
+
+
+    @Operation(
+            summary = "Return Books In Bulk REST API",
+            description = "REST API to return several books of one member in JaryqLibrary, reporting the outcome for each book"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/bulk-return")
+    public ResponseEntity<BulkLoanResponseDto> bulkReturnBooks(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Size(max = 100, message = "Idempotency-Key must not exceed 100 characters") String idempotencyKey,
+            @RequestBody @Valid BulkLoanRequestDto requestDto
+    ) {
+        log.debug("bulkReturnBooks() method starts");
+
+        ResponseEntity<BulkLoanResponseDto> response = idempotencyStore.execute(
+                idempotencyKey, "bulk-return", requestDto, BulkLoanResponseDto.class,
+                () -> ResponseEntity.ok(loanService.bulkReturnBooks(requestDto)));
+
+        log.debug("bulkReturnBooks() method ends");
+
+        return response;
     }
 
 
@@ -150,15 +413,19 @@ public class LoansController {
     })
     @PostMapping("/return-book")
     public ResponseEntity<LoanDetailsResponseDto> returnBook(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Size(max = 100, message = "Idempotency-Key must not exceed 100 characters") String idempotencyKey,
             @RequestBody @Valid LoanRequestDto requestDto
     ) {
         log.debug("returnBook() method starts");
 
-        LoanDetailsResponseDto responseDto = loanService.returnBook(requestDto);
+        ResponseEntity<LoanDetailsResponseDto> response = idempotencyStore.execute(
+                idempotencyKey, "return-book", requestDto, LoanDetailsResponseDto.class,
+                () -> ResponseEntity.ok(loanService.returnBook(requestDto)));
 
         log.debug("returnBook() method ends");
 
-        return ResponseEntity.ok(responseDto);
+        return response;
     }
 
 
@@ -180,15 +447,19 @@ public class LoansController {
     })
     @PostMapping("/extend-loan")
     public ResponseEntity<LoanDetailsResponseDto> extendLoan(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+            @Size(max = 100, message = "Idempotency-Key must not exceed 100 characters") String idempotencyKey,
             @RequestBody @Valid LoanRequestDto requestDto
     ) {
         log.debug("extendLoan() method starts");
 
-        LoanDetailsResponseDto responseDto = loanService.extendLoan(requestDto);
+        ResponseEntity<LoanDetailsResponseDto> response = idempotencyStore.execute(
+                idempotencyKey, "extend-loan", requestDto, LoanDetailsResponseDto.class,
+                () -> ResponseEntity.ok(loanService.extendLoan(requestDto)));
 
         log.debug("extendLoan() method ends");
 
-        return ResponseEntity.ok(responseDto);
+        return response;
     }
 
 
@@ -0,0 +1,53 @@
+package com.bekassyl.loans.datasource;
+
+import com.bekassyl.loans.config.ReplicaProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+
+/**
+ * Fences replicas that lag behind the primary by more than {@code loans.replicas.max-lag}, or cannot be
+ * reached, out of the read rotation until they catch up.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReplicaLagMonitor {
+    /**
+     * Seconds since the last replayed transaction, or 0 when the node is not a standby or has replayed
+     * everything it received (an idle primary would otherwise look like an ever-growing lag).
+     */
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final ReplicaProperties properties;
+
+    @Scheduled(fixedDelayString = "${loans.replicas.lag-check-delay:PT5S}")
+    public void checkReplicas() {
+        if (properties.getMaxLag() == null) {
+            return;
+        }
+
+        routingDataSource.getReplicas().forEach((replica, dataSource) -> {
+            boolean isAvailable;
+
+            try {
+                Double lagSeconds = new JdbcTemplate(dataSource).queryForObject(LAG_QUERY, Double.class);
+                Duration lag = Duration.ofMillis(Math.round((lagSeconds == null ? 0 : lagSeconds) * 1000));
+
+                isAvailable = lag.compareTo(properties.getMaxLag()) <= 0;
+
+                log.debug("Replica {} lags {}", replica, lag);
+            } catch (RuntimeException e) {
+                log.warn("Could not check the lag of replica {}: {}", replica, e.getMessage());
+                isAvailable = false;
+            }
+
+            routingDataSource.setAvailable(replica, isAvailable);
+        });
+    }
+}
@@ -0,0 +1,9 @@
+package com.bekassyl.loans.dto;
+
+public record BookChangedMsgDto(String isbn,
+                                ChangeType change,
+                                int availableCopies) {
+    public enum ChangeType {
+        UPDATED, DELETED, AVAILABILITY
+    }
+}
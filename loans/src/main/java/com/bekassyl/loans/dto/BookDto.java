@@ -1,5 +1,6 @@
 package com.bekassyl.loans.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
@@ -41,4 +42,9 @@ public class BookDto {
     @PositiveOrZero(message = "Available copies cannot be negative")
     @Schema(description = "Available copies of the book in library", example = "40")
     private int availableCopies;
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    @Schema(description = "Whether these are last known details served while the source service is unavailable",
+            example = "false")
+    private boolean stale;
 }
@@ -0,0 +1,41 @@
+package com.bekassyl.loans.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@Schema(
+        name = "Bulk Loan Item",
+        description = "Schema to hold the outcome of one book of a bulk loan request"
+)
+public class BulkLoanItemDto {
+    @Schema(description = "ISBN of the book", example = "9780141182636")
+    private String bookIsbn;
+
+    @Schema(description = "Outcome for the book", example = "LOANED")
+    private Outcome outcome;
+
+    @Schema(description = "Why the book could not be processed", example = "no available books")
+    private String reason;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy")
+    @Schema(description = "Loan date", example = "01-01-2020")
+    private LocalDate loanDate;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy")
+    @Schema(description = "Return date", example = "07-01-2020")
+    private LocalDate returnDate;
+
+    public static BulkLoanItemDto failed(String bookIsbn, String reason) {
+        return new BulkLoanItemDto(bookIsbn, Outcome.FAILED, reason, null, null);
+    }
+
+    public enum Outcome {
+        LOANED, RETURNED, FAILED
+    }
+}
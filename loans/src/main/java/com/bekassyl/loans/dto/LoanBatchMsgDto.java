@@ -0,0 +1,14 @@
+package com.bekassyl.loans.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record LoanBatchMsgDto(String cardNumber,
+                              String memberFullName,
+                              String memberIin,
+                              String mobileNumber,
+                              String email,
+                              List<String> bookNames,
+                              List<String> bookIsbns,
+                              LocalDate loanDate) {
+}
@@ -0,0 +1,10 @@
+package com.bekassyl.loans.dto;
+
+import com.bekassyl.loans.entity.Loan;
+
+import java.time.LocalDate;
+
+public record LoanFilter(Loan.LoanStatus status,
+                         LocalDate from,
+                         LocalDate to) {
+}
@@ -1,5 +1,6 @@
 package com.bekassyl.loans.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -49,4 +50,9 @@ public class MemberDto {
     @Size(max = 255, message = "Address must not exceed 255 characters")
     @Schema(description = "Address of the member", example = "12 Kabanbai batyr, Astana city")
     private String address;
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    @Schema(description = "Whether these are last known details served while the source service is unavailable",
+            example = "false")
+    private boolean stale;
 }
\ No newline at end of file
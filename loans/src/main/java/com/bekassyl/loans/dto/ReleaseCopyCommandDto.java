@@ -0,0 +1,5 @@
+package com.bekassyl.loans.dto;
+
+public record ReleaseCopyCommandDto(String checkoutId,
+                                    String bookIsbn) {
+}
@@ -0,0 +1,26 @@
+package com.bekassyl.loans.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Schema(
+        name = "Bulk Loan Request",
+        description = "Schema to hold a bulk loan request: one member and several books"
+)
+public class BulkLoanRequestDto {
+    @NotBlank(message = "IIN cannot be blank")
+    @Size(max = 12, message = "IIN must not exceed 12 characters")
+    @Schema(description = "IIN of the member", example = "180100586526")
+    private String memberIin;
+
+    @NotEmpty(message = "At least one ISBN is required")
+    @Size(max = 100, message = "No more than 100 books can be processed at once")
+    @Schema(description = "ISBNs of the books", example = "[\"9780141182636\", \"9780099285120\"]")
+    private List<@Pattern(regexp = "\\d{13}", message = "ISBN must contain exactly 13 digits") String> bookIsbns;
+}
@@ -0,0 +1,22 @@
+package com.bekassyl.loans.dto.response;
+
+import com.bekassyl.loans.dto.BulkLoanItemDto;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Schema(
+        name = "Bulk Loan Response",
+        description = "Schema to hold the outcome of a bulk loan request, one item per book"
+)
+public class BulkLoanResponseDto {
+    @Schema(description = "IIN of the member", example = "180100586526")
+    private String memberIin;
+
+    @Schema(description = "Outcome for each book, in request order")
+    private List<BulkLoanItemDto> items;
+}
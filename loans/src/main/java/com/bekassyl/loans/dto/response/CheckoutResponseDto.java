@@ -0,0 +1,32 @@
+package com.bekassyl.loans.dto.response;
+
+import com.bekassyl.loans.entity.CheckoutSaga;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Schema(
+        name = "Checkout",
+        description = "Schema to hold the state of an asynchronous checkout"
+)
+public class CheckoutResponseDto {
+    @Schema(description = "Checkout ID", example = "3f0c8a8e-5d1b-4c55-9a51-0f1a8d2b7c11")
+    private String checkoutId;
+
+    @Schema(description = "ISBN of the book", example = "9780141182636")
+    private String bookIsbn;
+
+    @Schema(description = "IIN of the member", example = "180100586526")
+    private String memberIin;
+
+    @Schema(description = "Status of the checkout", example = "PENDING")
+    private CheckoutSaga.CheckoutStatus status;
+
+    @Schema(description = "Why the checkout failed", example = "no available books")
+    private String reason;
+
+    @Schema(description = "ID of the created loan, once the checkout is completed", example = "1")
+    private Long loanId;
+}
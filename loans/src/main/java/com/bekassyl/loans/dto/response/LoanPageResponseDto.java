@@ -0,0 +1,22 @@
+package com.bekassyl.loans.dto.response;
+
+import com.bekassyl.loans.dto.LoanDto;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Schema(
+        name = "Loan Page",
+        description = "Schema to hold one page of loans, newest first"
+)
+public class LoanPageResponseDto {
+    @Schema(description = "Loans of the page")
+    private List<LoanDto> loans;
+
+    @Schema(description = "Cursor to pass to get the next page, absent on the last page", example = "MjAyNC0wMS0wMToxMDI")
+    private String nextCursor;
+}
@@ -0,0 +1,46 @@
+package com.bekassyl.loans.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of an asynchronous checkout: a copy is reserved by the books service, and the loan is created once the
+ * reservation is confirmed. A checkout that fails or times out after a copy was reserved releases it again.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "checkout_sagas")
+public class CheckoutSaga extends BaseEntity {
+    @Id
+    @Column(name = "id")
+    private String id;
+
+    @Column(name = "book_isbn", nullable = false)
+    private String bookIsbn;
+
+    @Column(name = "member_iin", nullable = false)
+    private String memberIin;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private CheckoutStatus status;
+
+    @Column(name = "reason")
+    private String reason;
+
+    @Column(name = "loan_id")
+    private Long loanId;
+
+    @Column(name = "deadline", nullable = false)
+    private LocalDateTime deadline;
+
+    public enum CheckoutStatus {
+        PENDING, COMPLETED, FAILED, TIMED_OUT
+    }
+}
@@ -0,0 +1,42 @@
+package com.bekassyl.loans.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of a request made with an {@code Idempotency-Key} header, kept so retries get the same response.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+    @Id
+    @Column(name = "id")
+    private String id;
+
+    @Column(name = "request_hash", nullable = false)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private KeyStatus status;
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Column(name = "response_body")
+    private String responseBody;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public enum KeyStatus {
+        IN_PROGRESS, COMPLETED
+    }
+}
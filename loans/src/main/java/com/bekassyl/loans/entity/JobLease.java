@@ -0,0 +1,34 @@
+package com.bekassyl.loans.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease and progress of a background job that must run on one replica at a time.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "job_leases")
+public class JobLease {
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "cursor_id", nullable = false)
+    private long cursorId;
+}
@@ -14,7 +14,8 @@ import java.time.LocalDate;
 @Table(name = "loans")
 public class Loan extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loans_seq")
+    @SequenceGenerator(name = "loans_seq", sequenceName = "loans_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "book_isbn", nullable = false)
@@ -36,6 +37,21 @@ public class Loan extends BaseEntity {
     @Column(name = "communication_status")
     private boolean communicationStatus;
 
+    @Column(name = "book_title")
+    private String bookTitle;
+
+    @Column(name = "book_author")
+    private String bookAuthor;
+
+    @Column(name = "member_card_number")
+    private String memberCardNumber;
+
+    @Column(name = "member_first_name")
+    private String memberFirstName;
+
+    @Column(name = "member_last_name")
+    private String memberLastName;
+
     public enum LoanStatus {
         BORROWED, RETURNED, OVERDUE
     }
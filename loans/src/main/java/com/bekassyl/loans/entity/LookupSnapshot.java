@@ -0,0 +1,34 @@
+package com.bekassyl.loans.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last known good book or member details, kept so that they can be served while the source service is down.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "lookup_snapshots")
+public class LookupSnapshot {
+    /**
+     * {@code book:<isbn>} or {@code member:<iin>}.
+     */
+    @Id
+    @Column(name = "id")
+    private String id;
+
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "fetched_at", nullable = false)
+    private LocalDateTime fetchedAt;
+}
@@ -0,0 +1,11 @@
+package com.bekassyl.loans.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    public ConcurrencyLimitExceededException(String downstream, int limit) {
+        super(String.format("Too many concurrent calls to %s: limit is %d", downstream, limit));
+    }
+}
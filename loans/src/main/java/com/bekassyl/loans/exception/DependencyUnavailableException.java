@@ -0,0 +1,15 @@
+package com.bekassyl.loans.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class DependencyUnavailableException extends RuntimeException {
+    public DependencyUnavailableException(String dependency, Throwable cause) {
+        super(String.format("The %s service is unavailable and no last known details are kept", dependency), cause);
+    }
+
+    public DependencyUnavailableException(String dependency, String operation, Throwable cause) {
+        super(String.format("The %s service is unavailable, could not %s", dependency, operation), cause);
+    }
+}
@@ -0,0 +1,13 @@
+package com.bekassyl.loans.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+@ResponseStatus(value = HttpStatus.GATEWAY_TIMEOUT)
+public class RemoteCallTimeoutException extends RuntimeException {
+    public RemoteCallTimeoutException(Duration deadline) {
+        super(String.format("Remote services did not respond within %d ms", deadline.toMillis()));
+    }
+}
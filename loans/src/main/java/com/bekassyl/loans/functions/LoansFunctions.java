@@ -1,23 +1,108 @@
 package com.bekassyl.loans.functions;
 
+import com.bekassyl.loans.config.LoanSnapshotProperties;
+import com.bekassyl.loans.dto.BookChangedMsgDto;
+import com.bekassyl.loans.dto.CopyReservationResultDto;
+import com.bekassyl.loans.dto.MemberChangedMsgDto;
 import com.bekassyl.loans.service.ILoanService;
+import com.bekassyl.loans.service.client.LookupClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 @Slf4j
 @Configuration
 public class LoansFunctions {
+    /**
+     * Consumes the whole poll as one batch, so every poll becomes a single update.
+     */
     @Bean
-    public Consumer<String> updateCommunication(ILoanService loanService) {
-        return loanInfo -> {
-            String[] parts = loanInfo.split("/");
+    public Consumer<List<String>> updateCommunication(ILoanService loanService) {
+        return loansInfo -> {
+            log.info("Updating communication status for {} loans", loansInfo.size());
 
-            log.info("Updating communication status for the loan: {}", "ISBN: " + parts[0] + " - IIN: " + parts[1]);
+            loanService.updateCommunicationStatus(loansInfo);
+        };
+    }
+
+    @Bean
+    public Consumer<List<String>> updateCommunications(ILoanService loanService) {
+        return loansInfo -> {
+            log.info("Updating communication status for {} loans of a bulk checkout", loansInfo.size());
+
+            loanService.updateCommunicationStatus(loansInfo);
+        };
+    }
+
+    @Bean
+    public Consumer<CopyReservationResultDto> copyReservationResult(ILoanService loanService) {
+        return copyReservationResultDto -> {
+            log.info("Completing the checkout: {}", copyReservationResultDto);
+
+            loanService.completeCheckout(copyReservationResultDto);
+        };
+    }
+
+    /**
+     * Bound without a group, so every replica evicts its own cached copy.
+     */
+    @Bean
+    public Consumer<BookChangedMsgDto> bookChanged(LookupClient lookupClient) {
+        return bookChangedMsgDto -> {
+            log.debug("Invalidating cached book details: {}", bookChangedMsgDto);
+
+            if (bookChangedMsgDto.change() == BookChangedMsgDto.ChangeType.AVAILABILITY) {
+                lookupClient.updateAvailableCopies(bookChangedMsgDto.isbn(), bookChangedMsgDto.availableCopies());
+            } else {
+                lookupClient.evictBook(bookChangedMsgDto.isbn());
+            }
+        };
+    }
+
+    /**
+     * Bound without a group, so every replica evicts its own cached copy.
+     */
+    @Bean
+    public Consumer<MemberChangedMsgDto> memberChanged(LookupClient lookupClient) {
+        return memberChangedMsgDto -> {
+            log.debug("Invalidating cached member details: {}", memberChangedMsgDto);
+
+            lookupClient.evictMember(memberChangedMsgDto.iin());
+        };
+    }
+
+    /**
+     * Bound with a group, so the loans of a changed book are updated by one replica instead of all of them.
+     */
+    @Bean
+    public Consumer<BookChangedMsgDto> refreshBookSnapshot(ILoanService loanService,
+                                                           LoanSnapshotProperties snapshotProperties) {
+        return bookChangedMsgDto -> {
+            if (snapshotProperties.isRefreshOnChange()
+                    && bookChangedMsgDto.change() == BookChangedMsgDto.ChangeType.UPDATED) {
+                log.debug("Refreshing the book snapshot of loans: {}", bookChangedMsgDto);
+
+                loanService.refreshBookSnapshot(bookChangedMsgDto.isbn());
+            }
+        };
+    }
+
+    /**
+     * Bound with a group, so the loans of a changed member are updated by one replica instead of all of them.
+     */
+    @Bean
+    public Consumer<MemberChangedMsgDto> refreshMemberSnapshot(ILoanService loanService,
+                                                               LoanSnapshotProperties snapshotProperties) {
+        return memberChangedMsgDto -> {
+            if (snapshotProperties.isRefreshOnChange()
+                    && memberChangedMsgDto.change() == MemberChangedMsgDto.ChangeType.UPDATED) {
+                log.debug("Refreshing the member snapshot of loans: {}", memberChangedMsgDto);
 
-            loanService.updateCommunicationStatus(parts[0], parts[1]);
+                loanService.refreshMemberSnapshot(memberChangedMsgDto.iin());
+            }
         };
     }
 }
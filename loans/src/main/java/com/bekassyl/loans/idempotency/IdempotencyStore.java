@@ -0,0 +1,147 @@
+package com.bekassyl.loans.idempotency;
+
+import com.bekassyl.loans.config.IdempotencyProperties;
+import com.bekassyl.loans.entity.IdempotencyKey;
+import com.bekassyl.loans.exception.IdempotencyKeyConflictException;
+import com.bekassyl.loans.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Runs mutating requests at most once per {@code Idempotency-Key}. The first request with a key claims it in
+ * the {@code idempotency_keys} table and stores its response; retries with the same key and request get the
+ * stored response back without running again. Completed responses are also kept in memory, so most retries
+ * do not reach the database.
+ */
+@Component
+public class IdempotencyStore {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+    private final Cache<String, IdempotencyKey> completed;
+
+    public IdempotencyStore(IdempotencyKeyRepository idempotencyKeyRepository,
+                            ObjectMapper objectMapper,
+                            IdempotencyProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency-keys");
+    }
+
+    /**
+     * Runs the action unless a request with the same key has already run.
+     *
+     * @param key          value of the Idempotency-Key header, the action simply runs if absent
+     * @param operation    name of the endpoint, keys are scoped to it
+     * @param request      request body, a key reused with a different body is rejected
+     * @param responseType type of the response body, to read a stored response back
+     * @param action       the request to run
+     * @return the response of the action, or the stored response of the first request with the key
+     * @throws IdempotencyKeyConflictException if the key was used with a different request, or the first
+     *                                         request with the key is still running
+     */
+    public <T> ResponseEntity<T> execute(String key, String operation, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+
+        String id = operation + ":" + key;
+        String requestHash = hash(request);
+        IdempotencyKey stored = completed.getIfPresent(id);
+
+        if (stored == null) {
+            if (idempotencyKeyRepository.claim(id, requestHash, properties.getInProgressTtl().toSeconds()) == 1) {
+                return run(id, requestHash, action);
+            }
+
+            stored = idempotencyKeyRepository.findById(id).orElseThrow(() -> inProgress(key));
+        }
+
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException(
+                    "Idempotency-Key " + key + " was already used with a different request");
+        }
+        if (stored.getStatus() != IdempotencyKey.KeyStatus.COMPLETED) {
+            throw inProgress(key);
+        }
+
+        return ResponseEntity
+                .status(stored.getResponseStatus())
+                .header(REPLAYED_HEADER, "true")
+                .body(fromJson(stored.getResponseBody(), responseType));
+    }
+
+    private <T> ResponseEntity<T> run(String id, String requestHash, Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.deleteById(id);
+            throw e;
+        }
+
+        String responseBody = toJson(response.getBody());
+        int responseStatus = response.getStatusCode().value();
+
+        idempotencyKeyRepository.complete(id, responseStatus, responseBody, properties.getTtl().toSeconds());
+        // the in-memory copy expires with the cache, its expiresAt is only an estimate of the stored one
+        completed.put(id, new IdempotencyKey(id, requestHash, IdempotencyKey.KeyStatus.COMPLETED, responseStatus,
+                responseBody, LocalDateTime.now().plus(properties.getTtl())));
+
+        return response;
+    }
+
+    private IdempotencyKeyConflictException inProgress(String key) {
+        return new IdempotencyKeyConflictException("A request with Idempotency-Key " + key + " is still in progress");
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Request cannot be hashed", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be stored", e);
+        }
+    }
+
+    private <T> T fromJson(String body, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read", e);
+        }
+    }
+}
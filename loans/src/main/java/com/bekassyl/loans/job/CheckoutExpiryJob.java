@@ -0,0 +1,35 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.config.CheckoutProperties;
+import com.bekassyl.loans.service.ILoanService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times out checkouts the books service did not answer in time, which releases their copies.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CheckoutExpiryJob {
+    private final ILoanService loanService;
+    private final CheckoutProperties properties;
+
+    @Scheduled(fixedDelayString = "${loans.checkout.expiry-delay:PT5S}")
+    public void expire() {
+        try {
+            int expired;
+            do {
+                expired = loanService.expireCheckouts(properties.getExpiryBatchSize());
+
+                if (expired > 0) {
+                    log.info("Timed out {} checkouts", expired);
+                }
+            } while (expired == properties.getExpiryBatchSize());
+        } catch (RuntimeException e) {
+            log.warn("Timing out checkouts failed, retrying on the next run", e);
+        }
+    }
+}
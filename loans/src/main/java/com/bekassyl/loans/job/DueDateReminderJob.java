@@ -0,0 +1,241 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.config.DueDateReminderProperties;
+import com.bekassyl.loans.dto.DueDateReminderMsgDto;
+import com.bekassyl.loans.outbox.OutboxWriter;
+import com.bekassyl.loans.repository.LoanReminderRepository;
+import com.bekassyl.loans.repository.LoanReminderRepository.ClaimedReminder;
+import com.bekassyl.loans.repository.LoanReminderRepository.DueDate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reminds members of upcoming return dates. The replica holding the lease keeps the due dates of the loans due
+ * within the lookahead in a {@link TimingWheel}: the wheel is loaded once a day, kept up to date from the loans
+ * changed since, and every tick the reminders whose slot has been reached are claimed in batches and published
+ * through the outbox, one event per member and return date. Postgres is only read for the day's changes, never
+ * scanned for due loans on every tick.
+ */
+@Slf4j
+@Component
+public class DueDateReminderJob {
+    private static final String JOB_NAME = "due-date-reminders";
+
+    private final LoanReminderRepository loanReminderRepository;
+    private final OutboxWriter outboxWriter;
+    private final JobLeaseManager jobLeaseManager;
+    private final PlatformTransactionManager transactionManager;
+    private final DueDateReminderProperties properties;
+    private final Counter sentCounter;
+    private final Counter skippedCounter;
+    private final Timer loadTimer;
+
+    /**
+     * Return date each loan in the wheel is scheduled for. Wheel entries that no longer match are stale and
+     * dropped when their slot is reached.
+     */
+    private final Map<Long, LocalDate> scheduled = new HashMap<>();
+    private TimingWheel<DueDate> wheel;
+    private LocalDate loadedOn;
+    private LocalDateTime refreshedAt;
+
+    public DueDateReminderJob(LoanReminderRepository loanReminderRepository,
+                              OutboxWriter outboxWriter,
+                              JobLeaseManager jobLeaseManager,
+                              PlatformTransactionManager transactionManager,
+                              DueDateReminderProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.loanReminderRepository = loanReminderRepository;
+        this.outboxWriter = outboxWriter;
+        this.jobLeaseManager = jobLeaseManager;
+        this.transactionManager = transactionManager;
+        this.properties = properties;
+        this.sentCounter = Counter.builder("loans.reminders.sent")
+                .description("Due date reminders published")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("loans.reminders.skipped")
+                .description("Due reminders dropped because the loan was returned, extended or already reminded")
+                .register(meterRegistry);
+        this.loadTimer = Timer.builder("loans.reminders.load")
+                .description("Duration of loading the due dates into the timing wheel")
+                .register(meterRegistry);
+        Gauge.builder("loans.reminders.scheduled", scheduled, Map::size)
+                .description("Loans scheduled in the timing wheel")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${loans.reminders.tick:PT1M}", fixedDelayString = "${loans.reminders.tick:PT1M}")
+    public void tick() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        if (!jobLeaseManager.tryAcquire(JOB_NAME, properties.getLeaseTtl())) {
+            if (wheel != null) {
+                log.info("Lost the due date reminder lease, dropping {} scheduled reminders", scheduled.size());
+                clear();
+            }
+            return;
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+
+            if (wheel == null || !now.toLocalDate().equals(loadedOn)) {
+                load(now);
+            } else if (!now.isBefore(refreshedAt.plus(properties.getRefreshInterval()))) {
+                refresh(now);
+            }
+
+            List<DueDate> due = new ArrayList<>();
+            wheel.advance(toMillis(now), due::add);
+            send(due);
+        } catch (RuntimeException e) {
+            log.warn("Due date reminders failed, the wheel is reloaded on the next tick", e);
+            clear();
+        }
+    }
+
+    private void load(LocalDateTime now) {
+        long start = System.nanoTime();
+        LocalDate today = now.toLocalDate();
+
+        clear();
+        wheel = new TimingWheel<>(properties.getTick().toMillis(), properties.getWheelSize(), toMillis(now));
+        loadedOn = today;
+        refreshedAt = now;
+
+        List<DueDate> due = new ArrayList<>();
+        readAll((afterId, limit) -> loanReminderRepository.findPending(
+                today, today.plus(properties.getLookahead()), afterId, limit), dueDate -> schedule(dueDate, due));
+        send(due);
+
+        loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Loaded {} due date reminders into the timing wheel", scheduled.size());
+    }
+
+    private void refresh(LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        refreshedAt = now;
+
+        List<DueDate> due = new ArrayList<>();
+        readAll((afterId, limit) -> loanReminderRepository.findChanged(
+                today, today, today.plus(properties.getLookahead()), afterId, limit), dueDate -> {
+            if (dueDate.pending()) {
+                if (!dueDate.returnDate().equals(scheduled.get(dueDate.loanId()))) {
+                    schedule(dueDate, due);
+                }
+            } else {
+                scheduled.remove(dueDate.loanId());
+            }
+        });
+        send(due);
+    }
+
+    private void readAll(BiFunction<Long, Integer, List<DueDate>> reader, Consumer<DueDate> consumer) {
+        long cursor = 0;
+
+        while (true) {
+            List<DueDate> dueDates = reader.apply(cursor, properties.getBatchSize());
+            dueDates.forEach(consumer);
+
+            if (dueDates.size() < properties.getBatchSize()) {
+                return;
+            }
+            cursor = dueDates.get(dueDates.size() - 1).loanId();
+        }
+    }
+
+    private void schedule(DueDate dueDate, List<DueDate> due) {
+        scheduled.put(dueDate.loanId(), dueDate.returnDate());
+
+        LocalDateTime remindAt = dueDate.returnDate().minusDays(properties.getDaysBefore()).atTime(properties.getSendAt());
+
+        if (!wheel.add(toMillis(remindAt), dueDate)) {
+            due.add(dueDate);
+        }
+    }
+
+    /**
+     * Claims and publishes the due reminders, one transaction per batch.
+     */
+    private void send(List<DueDate> due) {
+        List<DueDate> current = due.stream()
+                .filter(dueDate -> scheduled.remove(dueDate.loanId(), dueDate.returnDate()))
+                .toList();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long total = 0;
+
+        for (int from = 0; from < current.size(); from += properties.getBatchSize()) {
+            List<DueDate> batch = current.subList(from, Math.min(from + properties.getBatchSize(), current.size()));
+
+            int sent = transactionTemplate.execute(status -> {
+                List<ClaimedReminder> claimed = loanReminderRepository.claim(
+                        batch.stream().map(DueDate::loanId).toList(),
+                        batch.stream().map(DueDate::returnDate).toList());
+
+                claimed.stream()
+                        .collect(Collectors.groupingBy(reminder -> List.of(reminder.memberIin(), reminder.returnDate()),
+                                LinkedHashMap::new, Collectors.toList()))
+                        .values()
+                        .forEach(this::publish);
+
+                return claimed.size();
+            });
+
+            total += sent;
+            sentCounter.increment(sent);
+            skippedCounter.increment(batch.size() - sent);
+        }
+
+        skippedCounter.increment(due.size() - current.size());
+
+        if (total > 0) {
+            log.info("Sent {} due date reminders", total);
+        }
+    }
+
+    private void publish(List<ClaimedReminder> reminders) {
+        ClaimedReminder first = reminders.get(0);
+        DueDateReminderMsgDto dueDateReminderMsgDto = new DueDateReminderMsgDto(
+                first.memberCardNumber(),
+                first.memberFirstName() + " " + first.memberLastName(),
+                first.memberIin(),
+                reminders.stream().map(ClaimedReminder::bookTitle).toList(),
+                reminders.stream().map(ClaimedReminder::bookIsbn).toList(),
+                first.returnDate()
+        );
+
+        outboxWriter.add("sendDueDateReminder-out-0", first.memberIin(), dueDateReminderMsgDto);
+    }
+
+    private void clear() {
+        scheduled.clear();
+        wheel = null;
+        loadedOn = null;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,29 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.repository.IdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes idempotency keys whose responses are no longer replayed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyCleanupJob {
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Scheduled(initialDelayString = "${loans.idempotency.cleanup-delay:PT1H}",
+            fixedDelayString = "${loans.idempotency.cleanup-delay:PT1H}")
+    public void cleanup() {
+        try {
+            int deleted = idempotencyKeyRepository.deleteExpired();
+
+            log.debug("Deleted {} expired idempotency keys", deleted);
+        } catch (RuntimeException e) {
+            log.warn("Deleting expired idempotency keys failed, retrying on the next run", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.entity.JobLease;
+import com.bekassyl.loans.repository.JobLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cluster-wide leases for background jobs, backed by the {@code job_leases} table. A lease is held by one
+ * replica until it is released or expires, and carries the job's resumable progress.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobLeaseManager {
+    private final JobLeaseRepository jobLeaseRepository;
+
+    @Value("${spring.application.name}")
+    private String applicationName;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Takes or extends the lease of the job for this replica.
+     *
+     * @param jobName name of the job
+     * @param ttl     how long the lease is held without being renewed
+     * @return whether this replica holds the lease
+     */
+    public boolean tryAcquire(String jobName, Duration ttl) {
+        return jobLeaseRepository.acquire(jobName, owner(), ttl.toSeconds()) == 1;
+    }
+
+    public void release(String jobName) {
+        jobLeaseRepository.release(jobName, owner());
+    }
+
+    /**
+     * @return progress stored by the last holder of the lease
+     */
+    public long cursor(String jobName) {
+        return jobLeaseRepository.findById(jobName).map(JobLease::getCursorId).orElse(0L);
+    }
+
+    /**
+     * Stores the progress of the job.
+     *
+     * @return whether this replica still held the lease and the progress was stored
+     */
+    public boolean saveCursor(String jobName, long cursorId) {
+        return jobLeaseRepository.saveCursor(jobName, owner(), cursorId) == 1;
+    }
+
+    private String owner() {
+        return applicationName + ":" + instanceId;
+    }
+}
@@ -0,0 +1,98 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.config.LoanArchiveProperties;
+import com.bekassyl.loans.repository.LoanArchiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the loans table down to active and recently returned loans: returned loans past the retention are
+ * moved, in chunks, into the monthly partitions of {@code loans_archive}, which are created on demand. Old
+ * archive partitions are detached when {@code loans.archive.detach-after} is set. Runs on one replica at a time.
+ * <p>
+ * The loan history endpoints and the export read the archive along with the loans table, so archived loans stay
+ * visible until their partition is detached.
+ */
+@Slf4j
+@Component
+public class LoanArchiveJob {
+    private static final String JOB_NAME = "loan-archiver";
+
+    private final LoanArchiveRepository loanArchiveRepository;
+    private final JobLeaseManager jobLeaseManager;
+    private final LoanArchiveProperties properties;
+    private final Counter movedCounter;
+    private final Timer runTimer;
+
+    public LoanArchiveJob(LoanArchiveRepository loanArchiveRepository,
+                          JobLeaseManager jobLeaseManager,
+                          LoanArchiveProperties properties,
+                          MeterRegistry meterRegistry) {
+        this.loanArchiveRepository = loanArchiveRepository;
+        this.jobLeaseManager = jobLeaseManager;
+        this.properties = properties;
+        this.movedCounter = Counter.builder("loans.archive.moved")
+                .description("Returned loans moved to the archive")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("loans.archive.run")
+                .description("Duration of one archival run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${loans.archive.delay:PT1H}", fixedDelayString = "${loans.archive.delay:PT1H}")
+    public void archive() {
+        if (!properties.isEnabled() || !jobLeaseManager.tryAcquire(JOB_NAME, properties.getLeaseTtl())) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long moved = 0;
+
+        try {
+            LocalDate cutoff = LocalDate.now().minus(properties.getReturnedRetention());
+
+            loanArchiveRepository.findArchivableMonths(cutoff).forEach(loanArchiveRepository::createPartition);
+
+            for (int chunks = 0; chunks < properties.getMaxChunksPerRun(); chunks++) {
+                int count = loanArchiveRepository.moveReturned(cutoff, properties.getChunkSize());
+                moved += count;
+                movedCounter.increment(count);
+
+                if (count < properties.getChunkSize()) {
+                    break;
+                }
+                if (!jobLeaseManager.tryAcquire(JOB_NAME, properties.getLeaseTtl())) {
+                    log.warn("Lost the loan archiver lease after {} loans", moved);
+                    return;
+                }
+            }
+
+            if (properties.getDetachAfter() != null) {
+                List<String> detached = loanArchiveRepository.detachPartitionsBefore(
+                        YearMonth.now().minus(properties.getDetachAfter()));
+
+                if (!detached.isEmpty()) {
+                    log.info("Detached archive partitions into the tables {}", detached);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Loan archival failed, it continues on the next run", e);
+        } finally {
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            jobLeaseManager.release(JOB_NAME);
+
+            if (moved > 0) {
+                log.info("Moved {} returned loans to the archive", moved);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.config.LoanSnapshotProperties;
+import com.bekassyl.loans.service.ILoanService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills in the book and member snapshot of loans created before snapshots were stored, one batch per run.
+ * Walks the loans by id and starts over once it reaches the end, so loans whose book or member could not be
+ * found are retried on the next pass. Runs on one replica at a time under the cluster lease, which also keeps
+ * the progress, so the walk continues where it stopped when another replica takes the lease.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoanSnapshotBackfillJob {
+    private static final String JOB_NAME = "loan-snapshot-backfill";
+
+    private final ILoanService loanService;
+    private final JobLeaseManager jobLeaseManager;
+    private final LoanSnapshotProperties properties;
+
+    @Scheduled(initialDelayString = "${loans.snapshot.backfill-delay:PT1M}",
+            fixedDelayString = "${loans.snapshot.backfill-delay:PT1M}")
+    public void backfill() {
+        if (!properties.isBackfillEnabled()
+                || !jobLeaseManager.tryAcquire(JOB_NAME, properties.getBackfillLeaseTtl())) {
+            return;
+        }
+
+        long lastId = 0;
+
+        try {
+            lastId = jobLeaseManager.cursor(JOB_NAME);
+            long next = loanService.backfillSnapshots(lastId, properties.getBackfillBatchSize());
+
+            if (next < 0) {
+                jobLeaseManager.saveCursor(JOB_NAME, 0);
+            } else {
+                log.debug("Backfilled loan snapshots up to loan {}", next);
+                jobLeaseManager.saveCursor(JOB_NAME, next);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Loan snapshot backfill failed after loan {}, retrying on the next run", lastId, e);
+        } finally {
+            jobLeaseManager.release(JOB_NAME);
+        }
+    }
+}
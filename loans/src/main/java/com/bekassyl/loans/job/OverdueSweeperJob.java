@@ -0,0 +1,103 @@
+package com.bekassyl.loans.job;
+
+import com.bekassyl.loans.config.OverdueSweeperProperties;
+import com.bekassyl.loans.repository.LoanRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves borrowed loans whose return date has passed to {@code OVERDUE}. Loans are walked by id in chunks, each
+ * chunk marked with a single UPDATE. Progress is stored with the cluster lease, so a sweep interrupted by a
+ * restart or a lost lease is continued by whichever replica takes the lease next.
+ */
+@Slf4j
+@Component
+public class OverdueSweeperJob {
+    private static final String JOB_NAME = "overdue-sweeper";
+    private static final String UPDATED_BY = "OVERDUE_SWEEPER";
+
+    private final LoanRepository loanRepository;
+    private final JobLeaseManager jobLeaseManager;
+    private final OverdueSweeperProperties properties;
+    private final Counter markedCounter;
+    private final Counter chunkCounter;
+    private final Timer runTimer;
+
+    public OverdueSweeperJob(LoanRepository loanRepository,
+                             JobLeaseManager jobLeaseManager,
+                             OverdueSweeperProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.loanRepository = loanRepository;
+        this.jobLeaseManager = jobLeaseManager;
+        this.properties = properties;
+        this.markedCounter = Counter.builder("loans.overdue.sweeper.marked")
+                .description("Loans moved to OVERDUE by the sweeper")
+                .register(meterRegistry);
+        this.chunkCounter = Counter.builder("loans.overdue.sweeper.chunks")
+                .description("UPDATE statements issued by the sweeper")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("loans.overdue.sweeper.run")
+                .description("Duration of one sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${loans.overdue-sweeper.delay:PT5M}",
+            fixedDelayString = "${loans.overdue-sweeper.delay:PT5M}")
+    public void sweep() {
+        if (!properties.isEnabled() || !jobLeaseManager.tryAcquire(JOB_NAME, properties.getLeaseTtl())) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long marked = 0;
+        int chunks = 0;
+
+        try {
+            long cursor = jobLeaseManager.cursor(JOB_NAME);
+            LocalDate today = LocalDate.now();
+
+            while (chunks < properties.getMaxChunksPerRun()) {
+                List<Long> ids = loanRepository.findOverdueIds(today, cursor, Limit.of(properties.getChunkSize()));
+
+                if (ids.isEmpty()) {
+                    jobLeaseManager.saveCursor(JOB_NAME, 0);
+                    break;
+                }
+
+                int updated = loanRepository.markOverdue(ids, LocalDateTime.now(), UPDATED_BY);
+                cursor = ids.get(ids.size() - 1);
+                marked += updated;
+                chunks++;
+                markedCounter.increment(updated);
+                chunkCounter.increment();
+
+                if (!jobLeaseManager.saveCursor(JOB_NAME, cursor)
+                        || !jobLeaseManager.tryAcquire(JOB_NAME, properties.getLeaseTtl())) {
+                    log.warn("Lost the overdue sweeper lease after loan {}", cursor);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Overdue sweep failed, it resumes from the stored progress on the next run", e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            jobLeaseManager.release(JOB_NAME);
+
+            if (marked > 0) {
+                log.info("Marked {} loans overdue in {} chunks, {} loans/s",
+                        marked, chunks, marked * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1));
+            }
+        }
+    }
+}
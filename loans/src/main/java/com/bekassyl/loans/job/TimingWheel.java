@@ -0,0 +1,91 @@
+package com.bekassyl.loans.job;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Each level has {@code wheelSize} slots of one tick of the level; deadlines beyond
+ * the span of a level go to a coarser overflow level, created on demand, and cascade down as time advances.
+ * Adding and expiring an item is O(number of levels) whatever the number of items. Not thread-safe.
+ *
+ * @param <T> type of the scheduled items
+ */
+class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long intervalMillis;
+    private final List<ArrayDeque<Entry<T>>> slots;
+    private long currentTime;
+    private TimingWheel<T> overflow;
+
+    private record Entry<T>(long deadline, T item) {
+    }
+
+    TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.intervalMillis = tickMillis * wheelSize;
+        this.slots = new ArrayList<>(wheelSize);
+        this.currentTime = startMillis - startMillis % tickMillis;
+
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Schedules the item.
+     *
+     * @return {@code false} if the deadline falls into the current tick, the item is then due and not scheduled
+     */
+    boolean add(long deadline, T item) {
+        if (deadline < currentTime + tickMillis) {
+            return false;
+        }
+
+        if (deadline < currentTime + intervalMillis) {
+            slots.get((int) ((deadline / tickMillis) % wheelSize)).add(new Entry<>(deadline, item));
+        } else {
+            overflow().add(deadline, item);
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the wheel to {@code nowMillis}, handing the items whose slot has been reached to {@code expired}.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        advanceEntries(nowMillis, entry -> expired.accept(entry.item()));
+    }
+
+    private void advanceEntries(long nowMillis, Consumer<Entry<T>> expired) {
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+
+            if (overflow != null) {
+                overflow.advanceEntries(currentTime, entry -> {
+                    if (!add(entry.deadline(), entry.item())) {
+                        expired.accept(entry);
+                    }
+                });
+            }
+
+            ArrayDeque<Entry<T>> slot = slots.get((int) ((currentTime / tickMillis) % wheelSize));
+
+            while (!slot.isEmpty()) {
+                expired.accept(slot.poll());
+            }
+        }
+    }
+
+    private TimingWheel<T> overflow() {
+        if (overflow == null) {
+            overflow = new TimingWheel<>(intervalMillis, wheelSize, currentTime);
+        }
+
+        return overflow;
+    }
+}
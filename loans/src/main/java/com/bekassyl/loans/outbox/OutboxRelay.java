@@ -0,0 +1,107 @@
+package com.bekassyl.loans.outbox;
+
+import com.bekassyl.loans.config.OutboxProperties;
+import com.bekassyl.loans.entity.OutboxEvent;
+import com.bekassyl.loans.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes outbox events to the destinations of their bindings in batches. A batch is sent without waiting
+ * between records, so the producer can group and compress them, and is removed from the outbox only once the
+ * broker has acknowledged every record. A failed batch stays in the outbox and is sent again, so consumers
+ * may see an event more than once.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final BindingServiceProperties bindingServiceProperties;
+    private final OutboxProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter publishedCounter;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, String> kafkaTemplate,
+                       BindingServiceProperties bindingServiceProperties,
+                       OutboxProperties properties,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.bindingServiceProperties = bindingServiceProperties;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publishedCounter = Counter.builder("outbox.events.published")
+                .description("Outbox events acknowledged by the broker")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${loans.outbox.relay-delay:PT0.2S}")
+    public void relay() {
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published != null && published == properties.getBatchSize());
+        } catch (RuntimeException e) {
+            log.warn("Publishing outbox events failed, retrying on the next run", e);
+        }
+    }
+
+    private int publishBatch() {
+        List<OutboxEvent> events = outboxEventRepository.lockPending(properties.getBatchSize());
+
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        CompletableFuture<?>[] sends = events.stream()
+                .map(event -> kafkaTemplate.send(toRecord(event)))
+                .toArray(CompletableFuture[]::new);
+
+        try {
+            CompletableFuture.allOf(sends).get(properties.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing outbox events", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Broker did not acknowledge " + events.size() + " outbox events", e);
+        }
+
+        outboxEventRepository.deleteAllInBatch(events);
+        publishedCounter.increment(events.size());
+
+        return events.size();
+    }
+
+    private ProducerRecord<String, String> toRecord(OutboxEvent event) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(
+                bindingServiceProperties.getBindingDestination(event.getBinding()),
+                event.getMessageKey(),
+                event.getPayload()
+        );
+        record.headers().add(MessageHeaders.CONTENT_TYPE,
+                MimeTypeUtils.APPLICATION_JSON_VALUE.getBytes(StandardCharsets.UTF_8));
+
+        return record;
+    }
+}
@@ -0,0 +1,26 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.CheckoutSaga;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CheckoutSagaRepository extends JpaRepository<CheckoutSaga, String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from CheckoutSaga s where s.id = :id")
+    Optional<CheckoutSaga> lockById(@Param("id") String id);
+
+    /**
+     * Locks pending checkouts whose deadline has passed. Rows locked by another replica are skipped.
+     */
+    @Query(value = "SELECT * FROM checkout_sagas WHERE status = 'PENDING' AND deadline < now() " +
+            "ORDER BY deadline LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<CheckoutSaga> lockExpired(@Param("limit") int limit);
+}
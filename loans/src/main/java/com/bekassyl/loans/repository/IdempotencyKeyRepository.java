@@ -0,0 +1,51 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    /**
+     * Claims the key for a request about to run. An expired key, including one whose request never finished,
+     * can be claimed again. Expiry is computed and compared with the database clock only, so replicas with
+     * skewed clocks agree on when a claim runs out.
+     *
+     * @param ttlSeconds how long the claim is held
+     * @return 1 if the key was claimed, 0 if it is held by another request
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (id, request_hash, status, expires_at)
+            VALUES (:id, :requestHash, 'IN_PROGRESS', now() + make_interval(secs => :ttlSeconds))
+            ON CONFLICT (id) DO UPDATE
+                SET request_hash = EXCLUDED.request_hash, status = EXCLUDED.status,
+                    response_status = NULL, response_body = NULL, expires_at = EXCLUDED.expires_at
+                WHERE idempotency_keys.expires_at < now()
+            """, nativeQuery = true)
+    int claim(@Param("id") String id, @Param("requestHash") String requestHash, @Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * Stores the response of the request holding the key, kept for {@code ttlSeconds} by the database clock.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE idempotency_keys
+            SET status = 'COMPLETED', response_status = :responseStatus, response_body = :responseBody,
+                expires_at = now() + make_interval(secs => :ttlSeconds)
+            WHERE id = :id
+            """, nativeQuery = true)
+    int complete(@Param("id") String id, @Param("responseStatus") int responseStatus,
+                 @Param("responseBody") String responseBody, @Param("ttlSeconds") long ttlSeconds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE expires_at < now()", nativeQuery = true)
+    int deleteExpired();
+}
@@ -0,0 +1,44 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+    /**
+     * Takes the lease of the job if it is free, expired or already held by the owner, and extends it.
+     * Uses the database clock so replicas with skewed clocks agree on expiry.
+     *
+     * @return 1 if the owner holds the lease afterwards, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO job_leases (job_name, owner, lease_until, cursor_id)
+            VALUES (:jobName, :owner, now() + make_interval(secs => :seconds), 0)
+            ON CONFLICT (job_name) DO UPDATE
+                SET owner = EXCLUDED.owner, lease_until = EXCLUDED.lease_until
+                WHERE job_leases.lease_until < now() OR job_leases.owner = EXCLUDED.owner
+            """, nativeQuery = true)
+    int acquire(@Param("jobName") String jobName, @Param("owner") String owner, @Param("seconds") long seconds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_leases SET lease_until = now() WHERE job_name = :jobName AND owner = :owner",
+            nativeQuery = true)
+    int release(@Param("jobName") String jobName, @Param("owner") String owner);
+
+    /**
+     * Stores the progress of the job, as long as the owner still holds the lease.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_leases SET cursor_id = :cursorId WHERE job_name = :jobName AND owner = :owner",
+            nativeQuery = true)
+    int saveCursor(@Param("jobName") String jobName, @Param("owner") String owner, @Param("cursorId") long cursorId);
+}
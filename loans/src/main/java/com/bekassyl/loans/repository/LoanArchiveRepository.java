@@ -0,0 +1,217 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.dto.LoanFilter;
+import com.bekassyl.loans.entity.Loan;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Moves returned loans into the monthly partitions of {@code loans_archive}, manages those partitions and reads
+ * the archived loans back for the loan history and the export. Partition names are
+ * {@code loans_archive_yYYYYmMM}, so they sort by month. Detached partitions are no longer read.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LoanArchiveRepository {
+    private static final String COLUMNS = "id, book_isbn, member_iin, loan_date, return_date, status, " +
+            "communication_status, created_at, created_by, updated_at, updated_by, book_title, book_author, " +
+            "member_card_number, member_first_name, member_last_name";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+    private static final DateTimeFormatter DETACHED_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return months of the loan dates of the returned loans due for archival
+     */
+    public List<YearMonth> findArchivableMonths(LocalDate cutoff) {
+        return jdbcTemplate.query("SELECT DISTINCT CAST(date_trunc('month', loan_date) AS DATE) FROM loans " +
+                        "WHERE status = 'RETURNED' AND return_date < ?",
+                (resultSet, rowNum) -> YearMonth.from(resultSet.getDate(1).toLocalDate()), cutoff);
+    }
+
+    /**
+     * Creates the archive partition of the month unless it is attached already. A detached partition left behind
+     * under the same name is renamed out of the way first, so late returns of that month can be archived again.
+     */
+    public void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+
+        if (findPartitions().contains(partition)) {
+            return;
+        }
+
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+
+        if (Boolean.TRUE.equals(exists)) {
+            renameDetached(partition);
+        }
+
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE %s PARTITION OF loans_archive FOR VALUES FROM ('%s') TO ('%s')",
+                partition, month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    /**
+     * Moves returned loans due for archival in one statement. Their partitions must exist.
+     *
+     * @return number of moved loans
+     */
+    public int moveReturned(LocalDate cutoff, int limit) {
+        return jdbcTemplate.update("WITH moved AS (DELETE FROM loans WHERE id IN (" +
+                "SELECT id FROM loans WHERE status = 'RETURNED' AND return_date < ? " +
+                "ORDER BY return_date LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING " + COLUMNS + ") " +
+                "INSERT INTO loans_archive (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved", cutoff, limit);
+    }
+
+    /**
+     * Finds archived loans of a book or member in {@link LoanSpecifications#KEYSET_ORDER}, the same page the
+     * loans table is asked for, so the two can be merged.
+     *
+     * @param bookIsbn  isbn of the book, or {@code null}
+     * @param memberIin iin of the member, or {@code null}
+     * @param after     cursor of the previous page, or {@code null} for the first page
+     * @param limit     maximum number of loans
+     */
+    public List<Loan> findPage(String bookIsbn, String memberIin, LoanFilter filter, LoanCursor after, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = select(bookIsbn, memberIin, filter, args);
+
+        if (after != null) {
+            sql.append(" AND loan_date <= ? AND (loan_date < ? OR id < ?)");
+            args.add(after.loanDate());
+            args.add(after.loanDate());
+            args.add(after.id());
+        }
+        sql.append(" ORDER BY loan_date DESC, id DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), LoanArchiveRepository::toLoan, args.toArray());
+    }
+
+    /**
+     * Streams the archived loans matching the export, newest first: by loan date when restricted to a book or
+     * member, by id otherwise, as the export reads the loans table. The stream must be closed.
+     */
+    public Stream<Loan> stream(String bookIsbn, String memberIin, LoanFilter filter, int fetchSize) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = select(bookIsbn, memberIin, filter, args)
+                .append(bookIsbn == null && memberIin == null ? " ORDER BY id DESC" : " ORDER BY loan_date DESC, id DESC");
+
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, LoanArchiveRepository::toLoan);
+    }
+
+    /**
+     * Only returned loans are archived, so filters on other statuses never match an archived loan.
+     *
+     * @return whether archived loans may match the filter
+     */
+    public static boolean mayMatch(LoanFilter filter) {
+        return filter.status() == null || filter.status() == Loan.LoanStatus.RETURNED;
+    }
+
+    private static StringBuilder select(String bookIsbn, String memberIin, LoanFilter filter, List<Object> args) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM loans_archive WHERE true");
+
+        if (bookIsbn != null) {
+            sql.append(" AND book_isbn = ?");
+            args.add(bookIsbn);
+        }
+        if (memberIin != null) {
+            sql.append(" AND member_iin = ?");
+            args.add(memberIin);
+        }
+        if (filter.status() != null) {
+            sql.append(" AND status = ?");
+            args.add(filter.status().name());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND loan_date >= ?");
+            args.add(filter.from());
+        }
+        if (filter.to() != null) {
+            sql.append(" AND loan_date <= ?");
+            args.add(filter.to());
+        }
+
+        return sql;
+    }
+
+    private static Loan toLoan(ResultSet resultSet, int rowNum) throws SQLException {
+        Loan loan = new Loan();
+        loan.setId(resultSet.getLong("id"));
+        loan.setBookIsbn(resultSet.getString("book_isbn"));
+        loan.setMemberIin(resultSet.getString("member_iin"));
+        loan.setLoanDate(resultSet.getObject("loan_date", LocalDateTime.class).toLocalDate());
+        loan.setReturnDate(resultSet.getObject("return_date", LocalDateTime.class).toLocalDate());
+        loan.setStatus(Loan.LoanStatus.valueOf(resultSet.getString("status")));
+        loan.setCommunicationStatus(resultSet.getBoolean("communication_status"));
+        loan.setBookTitle(resultSet.getString("book_title"));
+        loan.setBookAuthor(resultSet.getString("book_author"));
+        loan.setMemberCardNumber(resultSet.getString("member_card_number"));
+        loan.setMemberFirstName(resultSet.getString("member_first_name"));
+        loan.setMemberLastName(resultSet.getString("member_last_name"));
+
+        return loan;
+    }
+
+    /**
+     * Detaches the archive partitions of the months before the given one and renames them to
+     * {@code <partition>_detached_<timestamp>}, so their names are free for partitions of late returns.
+     *
+     * @return names of the detached tables
+     */
+    public List<String> detachPartitionsBefore(YearMonth month) {
+        String limit = partitionName(month);
+        List<String> partitions = findPartitions().stream()
+                .filter(partition -> partition.compareTo(limit) < 0)
+                .toList();
+
+        return partitions.stream()
+                .map(partition -> {
+                    jdbcTemplate.execute("ALTER TABLE loans_archive DETACH PARTITION " + partition);
+                    return renameDetached(partition);
+                })
+                .toList();
+    }
+
+    /**
+     * @return names of the partitions attached to {@code loans_archive}
+     */
+    private List<String> findPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = 'loans_archive' ORDER BY c.relname", String.class);
+    }
+
+    private String renameDetached(String partition) {
+        String detached = partition + "_detached_" + DETACHED_SUFFIX.format(LocalDateTime.now());
+        jdbcTemplate.execute("ALTER TABLE " + partition + " RENAME TO " + detached);
+
+        return detached;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "loans_archive_" + PARTITION_SUFFIX.format(month);
+    }
+}
@@ -0,0 +1,35 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.Loan;
+import com.bekassyl.loans.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of a loan in the {@code (loan_date, id)} keyset order, encoded as an opaque token for clients.
+ */
+public record LoanCursor(LocalDate loanDate, Long id) {
+    public static LoanCursor of(Loan loan) {
+        return new LoanCursor(loan.getLoanDate(), loan.getId());
+    }
+
+    public String encode() {
+        String raw = loanDate + ":" + id;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static LoanCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+
+            return new LoanCursor(LocalDate.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException(token);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.bekassyl.loans.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads the due dates the reminder job schedules and claims the reminders it sends. A loan is reminded once per
+ * return date: {@code reminder_sent_for} holds the return date of the last reminder, so an extended loan is
+ * reminded again.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LoanReminderRepository {
+    private static final String PENDING = "status = 'BORROWED' AND return_date >= ? AND return_date < ? " +
+            "AND reminder_sent_for IS DISTINCT FROM return_date";
+
+    private static final RowMapper<DueDate> DUE_DATE = (resultSet, rowNum) -> new DueDate(
+            resultSet.getLong("id"),
+            resultSet.getTimestamp("return_date").toLocalDateTime().toLocalDate(),
+            resultSet.getBoolean("pending"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param loanId     id of the loan
+     * @param returnDate return date of the loan
+     * @param pending    whether the loan still needs a reminder for this return date
+     */
+    public record DueDate(long loanId, LocalDate returnDate, boolean pending) {
+    }
+
+    /**
+     * Loan and member details of a claimed reminder.
+     */
+    public record ClaimedReminder(String bookIsbn, String memberIin, LocalDate returnDate, String bookTitle,
+                                  String memberCardNumber, String memberFirstName, String memberLastName) {
+    }
+
+    /**
+     * @return borrowed loans due in {@code [from, to)} that have not been reminded yet, in id order after
+     * {@code afterId}
+     */
+    public List<DueDate> findPending(LocalDate from, LocalDate to, long afterId, int limit) {
+        return jdbcTemplate.query("SELECT id, return_date, true AS pending FROM loans WHERE " + PENDING +
+                        " AND id > ? ORDER BY id LIMIT ?",
+                DUE_DATE, from, to, afterId, limit);
+    }
+
+    /**
+     * @return loans created or updated on or after {@code since}, in id order after {@code afterId}, flagged with
+     * whether they need a reminder for a return date in {@code [from, to)}
+     */
+    public List<DueDate> findChanged(LocalDate since, LocalDate from, LocalDate to, long afterId, int limit) {
+        return jdbcTemplate.query("SELECT id, return_date, (" + PENDING + ") AS pending FROM loans " +
+                        "WHERE coalesce(updated_at, created_at) >= ? AND id > ? ORDER BY id LIMIT ?",
+                DUE_DATE, from, to, since, afterId, limit);
+    }
+
+    /**
+     * Marks the loans identified by {@code (loanIds[i], returnDates[i])} reminded in one statement. Loans returned
+     * or extended in the meantime and loans already reminded are skipped, so a reminder is claimed only once.
+     *
+     * @return the claimed reminders
+     */
+    public List<ClaimedReminder> claim(Collection<Long> loanIds, Collection<LocalDate> returnDates) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE loans l SET reminder_sent_for = l.return_date " +
+                            "FROM unnest(?, ?) AS k(id, return_date) " +
+                            "WHERE l.id = k.id AND l.return_date = k.return_date AND l.status = 'BORROWED' " +
+                            "AND l.reminder_sent_for IS DISTINCT FROM l.return_date " +
+                            "RETURNING l.book_isbn, l.member_iin, l.return_date, l.book_title, " +
+                            "l.member_card_number, l.member_first_name, l.member_last_name");
+            statement.setArray(1, connection.createArrayOf("bigint", loanIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("timestamp",
+                    returnDates.stream().map(returnDate -> Timestamp.valueOf(returnDate.atStartOfDay())).toArray()));
+            return statement;
+        }, (resultSet, rowNum) -> new ClaimedReminder(
+                resultSet.getString("book_isbn"),
+                resultSet.getString("member_iin"),
+                resultSet.getTimestamp("return_date").toLocalDateTime().toLocalDate(),
+                resultSet.getString("book_title"),
+                resultSet.getString("member_card_number"),
+                resultSet.getString("member_first_name"),
+                resultSet.getString("member_last_name")));
+    }
+}
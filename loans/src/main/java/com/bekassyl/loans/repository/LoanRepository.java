@@ -1,18 +1,93 @@
 package com.bekassyl.loans.repository;
 
 import com.bekassyl.loans.entity.Loan;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, Long> {
-    List<Loan> findByBookIsbn(String bookIsbn);
+public interface LoanRepository extends JpaRepository<Loan, Long>, JpaSpecificationExecutor<Loan>, LoanRepositoryCustom {
+    Loan findByBookIsbnAndMemberIinAndStatusIn(String bookIsbn, String memberIin, Collection<Loan.LoanStatus> statuses);
 
-    List<Loan> findByMemberIin(String memberIin);
+    List<Loan> findByMemberIinAndBookIsbnInAndStatusIn(String memberIin, Collection<String> bookIsbns,
+                                                       Collection<Loan.LoanStatus> statuses);
 
-    Loan findByBookIsbnAndMemberIinAndStatus(String bookIsbn, String memberIin, Loan.LoanStatus status);
+    boolean existsByBookIsbnAndMemberIinAndStatusIn(String bookIsbn, String memberIin, Collection<Loan.LoanStatus> statuses);
 
-    boolean existsByBookIsbnAndMemberIinAndStatus(String bookIsbn, String memberIin, Loan.LoanStatus status);
+    @Query("select l from Loan l where l.id > :afterId and (l.bookTitle is null or l.memberCardNumber is null) order by l.id")
+    List<Loan> findMissingSnapshot(@Param("afterId") long afterId, Limit limit);
+
+    @Query("select l.id from Loan l where l.status = com.bekassyl.loans.entity.Loan.LoanStatus.BORROWED " +
+            "and l.returnDate < :today and l.id > :afterId order by l.id")
+    List<Long> findOverdueIds(@Param("today") LocalDate today, @Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Marks the loans overdue in one statement. Loans returned in the meantime are left alone.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.status = com.bekassyl.loans.entity.Loan.LoanStatus.OVERDUE, " +
+            "l.updatedAt = :now, l.updatedBy = :updatedBy " +
+            "where l.id in :ids and l.status = com.bekassyl.loans.entity.Loan.LoanStatus.BORROWED")
+    int markOverdue(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now, @Param("updatedBy") String updatedBy);
+
+    /**
+     * Marks the communication status of the active loans identified by the pairs {@code (bookIsbns[i], memberIins[i])}
+     * in one statement. Pairs without an active loan and loans already marked are skipped.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update loans l set communication_status = true, updated_at = :now, updated_by = :updatedBy " +
+            "from unnest(cast(:bookIsbns as text[]), cast(:memberIins as text[])) as k(book_isbn, member_iin) " +
+            "where l.book_isbn = k.book_isbn and l.member_iin = k.member_iin " +
+            "and l.status in ('BORROWED', 'OVERDUE') and l.communication_status is not true",
+            nativeQuery = true)
+    int markCommunicated(@Param("bookIsbns") String[] bookIsbns, @Param("memberIins") String[] memberIins,
+                         @Param("now") LocalDateTime now, @Param("updatedBy") String updatedBy);
+
+    /**
+     * Fills the book snapshot of the loans of the book that do not have one yet.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.bookTitle = :title, l.bookAuthor = :author where l.bookIsbn = :isbn and l.bookTitle is null")
+    int fillBookSnapshot(@Param("isbn") String isbn, @Param("title") String title, @Param("author") String author);
+
+    /**
+     * Fills the member snapshot of the loans of the member that do not have one yet.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.memberCardNumber = :cardNumber, l.memberFirstName = :firstName, " +
+            "l.memberLastName = :lastName where l.memberIin = :iin and l.memberCardNumber is null")
+    int fillMemberSnapshot(@Param("iin") String iin, @Param("cardNumber") String cardNumber,
+                           @Param("firstName") String firstName, @Param("lastName") String lastName);
+
+    /**
+     * Overwrites the book snapshot of all loans of the book.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.bookTitle = :title, l.bookAuthor = :author where l.bookIsbn = :isbn")
+    int refreshBookSnapshot(@Param("isbn") String isbn, @Param("title") String title, @Param("author") String author);
+
+    /**
+     * Overwrites the member snapshot of all loans of the member.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.memberCardNumber = :cardNumber, l.memberFirstName = :firstName, " +
+            "l.memberLastName = :lastName where l.memberIin = :iin")
+    int refreshMemberSnapshot(@Param("iin") String iin, @Param("cardNumber") String cardNumber,
+                              @Param("firstName") String firstName, @Param("lastName") String lastName);
 }
@@ -0,0 +1,16 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.Loan;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+public interface LoanRepositoryCustom {
+    /**
+     * Streams the loans matching the specification in the given order, reading them
+     * from a database cursor in chunks of {@code fetchSize} rows. Loans are detached as they are consumed, so the
+     * persistence context does not grow with the result. Must be consumed inside a transaction and closed.
+     */
+    Stream<Loan> streamAll(Specification<Loan> specification, Sort sort, int fetchSize);
+}
@@ -0,0 +1,39 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.Loan;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.stream.Stream;
+
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Loan> streamAll(Specification<Loan> specification, Sort sort, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Loan> query = cb.createQuery(Loan.class);
+        Root<Loan> root = query.from(Loan.class);
+
+        query.select(root)
+                .where(specification.toPredicate(root, query, cb))
+                .orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .map(loan -> {
+                    entityManager.detach(loan);
+                    return loan;
+                });
+    }
+}
@@ -0,0 +1,73 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.dto.LoanFilter;
+import com.bekassyl.loans.entity.Loan;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+public final class LoanSpecifications {
+    private LoanSpecifications() {
+        // restrict initialization
+    }
+
+    /**
+     * Keyset order of loan listings: newest loans first, ties broken by id.
+     */
+    public static final Sort KEYSET_ORDER = Sort.by(Sort.Order.desc("loanDate"), Sort.Order.desc("id"));
+
+    /**
+     * Order of exports not restricted to a book or member: newest ids first, read straight off the primary key.
+     * No index leads with {@code loan_date}, so {@link #KEYSET_ORDER} would sort the whole table first.
+     */
+    public static final Sort ID_ORDER = Sort.by(Sort.Order.desc("id"));
+
+    public static Specification<Loan> hasBookIsbn(String bookIsbn) {
+        return (root, query, cb) -> cb.equal(root.get("bookIsbn"), bookIsbn);
+    }
+
+    public static Specification<Loan> hasMemberIin(String memberIin) {
+        return (root, query, cb) -> cb.equal(root.get("memberIin"), memberIin);
+    }
+
+    /**
+     * Applies the optional status and loan date range of the filter.
+     */
+    public static Specification<Loan> matches(LoanFilter filter) {
+        return (root, query, cb) -> {
+            var predicate = cb.conjunction();
+
+            if (filter.status() != null) {
+                predicate = cb.and(predicate, cb.equal(root.get("status"), filter.status()));
+            }
+            if (filter.from() != null) {
+                predicate = cb.and(predicate, cb.greaterThanOrEqualTo(root.get("loanDate"), filter.from()));
+            }
+            if (filter.to() != null) {
+                predicate = cb.and(predicate, cb.lessThanOrEqualTo(root.get("loanDate"), filter.to()));
+            }
+
+            return predicate;
+        };
+    }
+
+    /**
+     * Selects the loans that come after the cursor in {@link #KEYSET_ORDER}, or all loans for the first page.
+     * The leading {@code loanDate <= cursor} bound lets Postgres seek the {@code (..., loan_date DESC, id DESC)}
+     * indexes to the cursor instead of walking every row before it.
+     */
+    public static Specification<Loan> after(LoanCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return cb.conjunction();
+            }
+
+            return cb.and(
+                    cb.lessThanOrEqualTo(root.get("loanDate"), cursor.loanDate()),
+                    cb.or(
+                            cb.lessThan(root.get("loanDate"), cursor.loanDate()),
+                            cb.lessThan(root.get("id"), cursor.id())
+                    )
+            );
+        };
+    }
+}
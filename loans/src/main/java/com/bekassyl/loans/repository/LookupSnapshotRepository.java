@@ -0,0 +1,23 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.LookupSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface LookupSnapshotRepository extends JpaRepository<LookupSnapshot, String> {
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO lookup_snapshots (id, payload, fetched_at)
+            VALUES (:id, :payload, :fetchedAt)
+            ON CONFLICT (id) DO UPDATE SET payload = EXCLUDED.payload, fetched_at = EXCLUDED.fetched_at
+            """, nativeQuery = true)
+    int upsert(@Param("id") String id, @Param("payload") String payload, @Param("fetchedAt") LocalDateTime fetchedAt);
+}
@@ -1,40 +1,130 @@
 package com.bekassyl.loans.service;
 
+import com.bekassyl.loans.dto.CopyReservationResultDto;
+import com.bekassyl.loans.dto.LoanFilter;
+import com.bekassyl.loans.dto.response.BulkLoanResponseDto;
+import com.bekassyl.loans.dto.response.CheckoutResponseDto;
 import com.bekassyl.loans.dto.response.LoanDetailsResponseDto;
+import com.bekassyl.loans.dto.request.BulkLoanRequestDto;
 import com.bekassyl.loans.dto.request.LoanRequestDto;
-import com.bekassyl.loans.dto.LoanDto;
+import com.bekassyl.loans.dto.response.LoanPageResponseDto;
+import com.bekassyl.loans.exception.BookAlreadyBorrowedException;
+import com.bekassyl.loans.exception.InvalidCursorException;
 import com.bekassyl.loans.exception.ResourceNotFoundException;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 
 public interface ILoanService {
     /**
-     * Finds the list of loans by book isbn.
+     * Finds one page of loans by book isbn, newest first.
      *
      * @param bookIsbn isbn to search for
-     * @return DTO containing loans for the given book isbn
-     * @throws ResourceNotFoundException if loans are not found
+     * @param filter   optional status and loan date range
+     * @param cursor   nextCursor of the previous page, or {@code null} for the first page
+     * @param size     maximum number of loans in the page
+     * @return DTO containing the loans of the page and the cursor of the next page
+     * @throws InvalidCursorException if the cursor cannot be decoded
      */
-    List<LoanDto> fetchLoansByBookIsbn(String bookIsbn);
+    LoanPageResponseDto fetchLoansByBookIsbn(String bookIsbn, LoanFilter filter, String cursor, int size);
 
     /**
-     * Finds the list of loans by member iin.
+     * Finds one page of loans by member iin, newest first.
      *
      * @param memberIin member iin to search for
-     * @return List of DTOs containing loans for the given member iin
-     * @throws ResourceNotFoundException if loans are not found
+     * @param filter    optional status and loan date range
+     * @param cursor    nextCursor of the previous page, or {@code null} for the first page
+     * @param size      maximum number of loans in the page
+     * @return DTO containing the loans of the page and the cursor of the next page
+     * @throws InvalidCursorException if the cursor cannot be decoded
      */
-    List<LoanDto> fetchLoansByMemberIin(String memberIin);
+    LoanPageResponseDto fetchLoansByMemberIin(String memberIin, LoanFilter filter, String cursor, int size);
 
     /**
-     * Saves the new loan.
+     * Writes the matching loans to the output as newline-delimited JSON, newest first: by loan date when
+     * restricted to a book or member, by id otherwise, so that either way rows come straight off an index.
+     * Loans are read from a database cursor and written in batches, so memory use does not depend on the
+     * number of exported loans.
+     *
+     * @param bookIsbn  optional isbn to restrict the export to
+     * @param memberIin optional member iin to restrict the export to
+     * @param filter    optional status and loan date range
+     * @param enrich    whether to add book and member details, looked up once per batch
+     * @param out       stream to write to
+     * @throws IOException if writing to the output fails
+     */
+    void exportLoans(String bookIsbn, String memberIin, LoanFilter filter, boolean enrich, OutputStream out)
+            throws IOException;
+
+    /**
+     * Saves the new loan. The loan row is inserted first and the unique index on active loans rejects a
+     * second active loan of the same book by the same member; the book copy is taken only afterwards.
      *
      * @param requestDto request loan data transfer object
      * @return LoanDetailsResponseDto loan details data transfer object
+     * @throws BookAlreadyBorrowedException if the member has already borrowed this book
      * @throws ResourceNotFoundException if there are no books available
      */
     LoanDetailsResponseDto createLoan(LoanRequestDto requestDto);
 
+    /**
+     * Loans several books to one member. The member and books are looked up once, the loans are inserted in
+     * one transaction and the copies are taken with one call to the books service; the member gets one
+     * notification for all loaned books.
+     *
+     * @param requestDto bulk loan request data transfer object
+     * @return DTO containing the outcome for each book
+     * @throws ResourceNotFoundException if a member is not found
+     * @throws BookAlreadyBorrowedException if a concurrent request loaned one of the books to the member
+     */
+    BulkLoanResponseDto bulkCreateLoans(BulkLoanRequestDto requestDto);
+
+    /**
+     * Returns several books of one member. The loans are marked returned in one transaction and the copies
+     * are put back with one call to the books service.
+     *
+     * @param requestDto bulk loan request data transfer object
+     * @return DTO containing the outcome for each book
+     */
+    BulkLoanResponseDto bulkReturnBooks(BulkLoanRequestDto requestDto);
+
+    /**
+     * Starts an asynchronous checkout. A reserve-copy command is sent to the books service and the loan is
+     * created when the reservation is confirmed.
+     *
+     * @param requestDto request loan data transfer object
+     * @return DTO containing the pending checkout
+     * @throws BookAlreadyBorrowedException if the member has already borrowed this book
+     */
+    CheckoutResponseDto startCheckout(LoanRequestDto requestDto);
+
+    /**
+     * Finds the state of a checkout.
+     *
+     * @param checkoutId id of the checkout
+     * @return DTO containing the state of the checkout
+     * @throws ResourceNotFoundException if a checkout is not found
+     */
+    CheckoutResponseDto fetchCheckout(String checkoutId);
+
+    /**
+     * Applies the answer of the books service to a checkout. A confirmed reservation creates the loan; if the
+     * loan cannot be created the copy is released again. Answers for checkouts that are no longer pending are
+     * ignored, their copy is released by whatever ended them.
+     *
+     * @param result reservation result sent by the books service
+     */
+    void completeCheckout(CopyReservationResultDto result);
+
+    /**
+     * Times out pending checkouts whose deadline has passed and releases their copies.
+     *
+     * @param batchSize maximum number of checkouts to time out
+     * @return number of checkouts timed out
+     */
+    int expireCheckouts(int batchSize);
+
     /**
      * Returns the book and updates the loan status to 'returned'.
      *
@@ -54,11 +144,33 @@ public interface ILoanService {
     LoanDetailsResponseDto extendLoan(LoanRequestDto requestDto);
 
     /**
-     * Updates communication status
+     * Fills in the book and member snapshot of the next loans that were created without one.
+     *
+     * @param afterId   id after which to look for loans without a snapshot
+     * @param batchSize maximum number of loans to look at
+     * @return id of the last loan looked at, or {@code -1} if there are no loans without a snapshot after afterId
+     */
+    long backfillSnapshots(long afterId, int batchSize);
+
+    /**
+     * Overwrites the book snapshot of all loans of the book with its current details.
+     *
+     * @param bookIsbn isbn of the changed book
+     */
+    void refreshBookSnapshot(String bookIsbn);
+
+    /**
+     * Overwrites the member snapshot of all loans of the member with their current details.
+     *
+     * @param memberIin iin of the changed member
+     */
+    void refreshMemberSnapshot(String memberIin);
+
+    /**
+     * Updates communication status of the active loans in one statement. Keys without an active loan are skipped.
      *
-     * @param bookIsbn to identify the book
-     * @param memberIin to identify the member
-     * @return boolean indicating if the update of communication status is successful or not
+     * @param loanKeys keys of the loans in the form {@code isbn/iin}
+     * @return number of updated loans
      */
-    boolean updateCommunicationStatus(String bookIsbn, String memberIin);
+    int updateCommunicationStatus(Collection<String> loanKeys);
 }
@@ -0,0 +1,88 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.config.ConcurrencyLimitProperties;
+import com.bekassyl.loans.exception.ConcurrencyLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead whose size follows the downstream's health (AIMD): every fast call made while at least half of
+ * the limit is in use raises the limit by one, every slow or failed call multiplies it by the backoff ratio.
+ * Calls over the limit are rejected at once instead of queueing.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private final String downstream;
+    private final ConcurrencyLimitProperties properties;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private volatile double limit;
+
+    public AdaptiveConcurrencyLimiter(String downstream, ConcurrencyLimitProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this.downstream = downstream;
+        this.properties = properties;
+        this.limit = properties.getInitialLimit();
+
+        Gauge.builder("loans.downstream.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current concurrency limit of the downstream")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        Gauge.builder("loans.downstream.in-flight", inFlight, AtomicInteger::get)
+                .description("Calls to the downstream in flight")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("loans.downstream.rejected")
+                .description("Calls rejected because the downstream was at its concurrency limit")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot for a call.
+     *
+     * @return number of calls in flight including this one
+     * @throws ConcurrencyLimitExceededException if the downstream is at its limit
+     */
+    public int acquire() {
+        int limitNow = getLimit();
+
+        while (true) {
+            int current = inFlight.get();
+
+            if (current >= limitNow) {
+                rejected.increment();
+                throw new ConcurrencyLimitExceededException(downstream, limitNow);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a finished call and adjusts the limit.
+     *
+     * @param inFlightAtStart value returned by {@link #acquire()}
+     * @param latency         duration of the call
+     * @param dropped         whether the call failed or was answered with an overload status
+     */
+    public void release(int inFlightAtStart, Duration latency, boolean dropped) {
+        inFlight.decrementAndGet();
+
+        synchronized (this) {
+            if (dropped || latency.compareTo(properties.getLatencyThreshold()) > 0) {
+                limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+            } else if (inFlightAtStart * 2 >= limit) {
+                limit = Math.min(properties.getMaxLimit(), limit + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+}
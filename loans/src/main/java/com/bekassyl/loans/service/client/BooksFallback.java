@@ -1,23 +1,63 @@
 package com.bekassyl.loans.service.client;
 
 import com.bekassyl.loans.dto.BookDto;
+import com.bekassyl.loans.exception.DependencyUnavailableException;
+import feign.FeignException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.stereotype.Component;
 
-@Component
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers lookups with the last known details, marked stale, when the books service cannot be reached; a
+ * missing book stays missing. Changes of available copies fail with {@link DependencyUnavailableException}, so
+ * that an unreachable books service is not mistaken for a book without available copies.
+ */
 public class BooksFallback implements BooksFeignClient {
+    private final Throwable cause;
+    private final LastKnownGoodStore lastKnownGood;
+
+    public BooksFallback(Throwable cause, LastKnownGoodStore lastKnownGood) {
+        this.cause = cause;
+        this.lastKnownGood = lastKnownGood;
+    }
+
     @Override
     public ResponseEntity<BookDto> fetchBookDetails(String isbn) {
-        return null;
+        if (cause instanceof FeignException.NotFound) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return lastKnownGood.findBook(isbn)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new DependencyUnavailableException("books", cause));
+    }
+
+    @Override
+    public ResponseEntity<List<BookDto>> fetchBooksDetails(Collection<String> isbns) {
+        return lastKnownGood.findBooks(isbns)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new DependencyUnavailableException("books", cause));
     }
 
     @Override
     public boolean loanBook(String isbn) {
-        return false;
+        throw new DependencyUnavailableException("books", "take a copy of the book " + isbn, cause);
     }
 
     @Override
     public boolean returnBook(String isbn) {
-        return false;
+        throw new DependencyUnavailableException("books", "return a copy of the book " + isbn, cause);
+    }
+
+    @Override
+    public Set<String> loanBooks(Collection<String> isbns) {
+        throw new DependencyUnavailableException("books", "take copies of the books " + isbns, cause);
+    }
+
+    @Override
+    public Set<String> returnBooks(Collection<String> isbns) {
+        throw new DependencyUnavailableException("books", "return copies of the books " + isbns, cause);
     }
 }
@@ -0,0 +1,16 @@
+package com.bekassyl.loans.service.client;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.openfeign.FallbackFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class BooksFallbackFactory implements FallbackFactory<BooksFallback> {
+    private final LastKnownGoodStore lastKnownGood;
+
+    @Override
+    public BooksFallback create(Throwable cause) {
+        return new BooksFallback(cause, lastKnownGood);
+    }
+}
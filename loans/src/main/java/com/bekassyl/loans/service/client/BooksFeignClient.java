@@ -5,16 +5,31 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "books", fallback = BooksFallback.class)
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+@FeignClient(name = "books", fallbackFactory = BooksFallbackFactory.class,
+        configuration = {PooledTransportConfiguration.class, CborRpcConfiguration.class})
 public interface BooksFeignClient {
     @GetMapping(value = "/books/api/fetch", consumes = "application/json")
     public ResponseEntity<BookDto> fetchBookDetails(@RequestParam("isbn") String isbn);
 
+    @PostMapping(value = "/books/api/fetch-bulk", consumes = "application/json")
+    public ResponseEntity<List<BookDto>> fetchBooksDetails(@RequestBody Collection<String> isbns);
+
     @PostMapping(value = "/books/api/loan-book", consumes = "application/json")
     public boolean loanBook(@RequestParam("isbn") String isbn);
 
     @PostMapping(value = "/books/api/return-book", consumes = "application/json")
     public boolean returnBook(@RequestParam("isbn") String isbn);
+
+    @PostMapping(value = "/books/api/loan-books", consumes = "application/json")
+    public Set<String> loanBooks(@RequestBody Collection<String> isbns);
+
+    @PostMapping(value = "/books/api/return-books", consumes = "application/json")
+    public Set<String> returnBooks(@RequestBody Collection<String> isbns);
 }
@@ -0,0 +1,50 @@
+package com.bekassyl.loans.service.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import feign.RequestInterceptor;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+
+/**
+ * Switches the Feign clients from JSON to CBOR bodies when {@code loans.rpc.encoding} is {@code cbor}: request
+ * bodies are written as CBOR and CBOR responses are asked for, which the books and members controllers produce
+ * next to JSON. Responses are read by the CBOR message converter of the default decoder.
+ * <p>
+ * Not a {@code @Configuration} on purpose: it is only applied through {@code @FeignClient(configuration = ...)}.
+ */
+public class CborRpcConfiguration {
+    @Bean
+    @ConditionalOnProperty(prefix = "loans.rpc", name = "encoding", havingValue = "cbor")
+    public Encoder feignEncoder() {
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+
+        return (object, bodyType, template) -> {
+            ObjectWriter writer = cborMapper.writerFor(cborMapper.getTypeFactory().constructType(bodyType));
+
+            try {
+                template.removeHeader(HttpHeaders.CONTENT_TYPE);
+                template.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE);
+                template.body(writer.writeValueAsBytes(object), null);
+            } catch (IOException e) {
+                throw new EncodeException("Could not write the request body as CBOR", e);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "loans.rpc", name = "encoding", havingValue = "cbor")
+    public RequestInterceptor cborAcceptInterceptor() {
+        return template -> {
+            template.removeHeader(HttpHeaders.ACCEPT);
+            template.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_CBOR_VALUE);
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.bekassyl.loans.service.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Runs Feign calls through the downstream's {@link AdaptiveConcurrencyLimiter}. Rejections surface as
+ * exceptions, so the circuit breaker hands them to the client's fallback.
+ */
+public class ConcurrencyLimitedClient implements Client {
+    private final Client delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedClient(Client delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        int inFlightAtStart = limiter.acquire();
+        long start = System.nanoTime();
+        boolean dropped = true;
+
+        try {
+            Response response = delegate.execute(request, options);
+            dropped = response.status() == 429 || response.status() >= 500;
+            return response;
+        } finally {
+            limiter.release(inFlightAtStart, Duration.ofNanos(System.nanoTime() - start), dropped);
+        }
+    }
+}
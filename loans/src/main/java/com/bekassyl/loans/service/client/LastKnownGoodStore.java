@@ -0,0 +1,175 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.config.LastKnownGoodProperties;
+import com.bekassyl.loans.dto.BookDto;
+import com.bekassyl.loans.dto.MemberDto;
+import com.bekassyl.loans.repository.LookupSnapshotRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Last known good book and member details, recorded on every successful lookup and served, marked stale, by
+ * the Feign fallbacks while the books or members service is unavailable. Kept in bounded in-memory caches
+ * and, when {@code loans.last-known-good.persist} is set, in the database as well.
+ */
+@Slf4j
+@Component
+public class LastKnownGoodStore {
+    private static final String BOOK = "book:";
+    private static final String MEMBER = "member:";
+
+    private final LookupSnapshotRepository lookupSnapshotRepository;
+    private final ObjectMapper objectMapper;
+    private final LastKnownGoodProperties properties;
+    private final Cache<String, BookDto> books;
+    private final Cache<String, MemberDto> members;
+    private final Counter served;
+    private final Counter missed;
+
+    public LastKnownGoodStore(LookupSnapshotRepository lookupSnapshotRepository,
+                              ObjectMapper objectMapper,
+                              LastKnownGoodProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.lookupSnapshotRepository = lookupSnapshotRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.books = buildCache(properties);
+        this.members = buildCache(properties);
+        this.served = Counter.builder("loans.lookup.stale")
+                .description("Lookups answered with last known details while the source service was unavailable")
+                .tag("outcome", "served")
+                .register(meterRegistry);
+        this.missed = Counter.builder("loans.lookup.stale")
+                .description("Lookups answered with last known details while the source service was unavailable")
+                .tag("outcome", "missing")
+                .register(meterRegistry);
+    }
+
+    private static <V> Cache<String, V> buildCache(LastKnownGoodProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getMaxAge())
+                .build();
+    }
+
+    public void putBook(BookDto bookDto) {
+        books.put(bookDto.getIsbn(), bookDto);
+        persist(BOOK + bookDto.getIsbn(), bookDto);
+    }
+
+    public void putMember(MemberDto memberDto) {
+        members.put(memberDto.getIin(), memberDto);
+        persist(MEMBER + memberDto.getIin(), memberDto);
+    }
+
+    /**
+     * @return last known details of the book marked stale, if any
+     */
+    public Optional<BookDto> findBook(String isbn) {
+        return Optional.ofNullable(books.get(isbn, key -> load(BOOK + key, BookDto.class)))
+                .map(bookDto -> new BookDto(bookDto.getTitle(), bookDto.getAuthor(), bookDto.getGenre(),
+                        bookDto.getIsbn(), bookDto.getTotalCopies(), bookDto.getAvailableCopies(), true))
+                .map(this::served)
+                .or(this::missed);
+    }
+
+    /**
+     * @return last known details of the member marked stale, if any
+     */
+    public Optional<MemberDto> findMember(String iin) {
+        return Optional.ofNullable(members.get(iin, key -> load(MEMBER + key, MemberDto.class)))
+                .map(memberDto -> new MemberDto(memberDto.getCardNumber(), memberDto.getFirstName(),
+                        memberDto.getLastName(), memberDto.getIin(), memberDto.getEmail(),
+                        memberDto.getMobileNumber(), memberDto.getAddress(), true))
+                .map(this::served)
+                .or(this::missed);
+    }
+
+    /**
+     * @return last known details of all the books marked stale, or empty if any of them is unknown
+     */
+    public Optional<List<BookDto>> findBooks(Collection<String> isbns) {
+        List<BookDto> bookDtos = new ArrayList<>();
+
+        for (String isbn : new LinkedHashSet<>(isbns)) {
+            Optional<BookDto> bookDto = findBook(isbn);
+            if (bookDto.isEmpty()) {
+                return Optional.empty();
+            }
+            bookDtos.add(bookDto.get());
+        }
+
+        return Optional.of(bookDtos);
+    }
+
+    /**
+     * @return last known details of all the members marked stale, or empty if any of them is unknown
+     */
+    public Optional<List<MemberDto>> findMembers(Collection<String> iins) {
+        List<MemberDto> memberDtos = new ArrayList<>();
+
+        for (String iin : new LinkedHashSet<>(iins)) {
+            Optional<MemberDto> memberDto = findMember(iin);
+            if (memberDto.isEmpty()) {
+                return Optional.empty();
+            }
+            memberDtos.add(memberDto.get());
+        }
+
+        return Optional.of(memberDtos);
+    }
+
+    private <T> T served(T value) {
+        served.increment();
+        return value;
+    }
+
+    private <T> Optional<T> missed() {
+        missed.increment();
+        return Optional.empty();
+    }
+
+    private void persist(String id, Object value) {
+        if (!properties.isPersist()) {
+            return;
+        }
+
+        try {
+            lookupSnapshotRepository.upsert(id, objectMapper.writeValueAsString(value), LocalDateTime.now());
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not persist the last known details of {}: {}", id, e.getMessage());
+        }
+    }
+
+    private <T> T load(String id, Class<T> type) {
+        if (!properties.isPersist()) {
+            return null;
+        }
+
+        try {
+            return lookupSnapshotRepository.findById(id)
+                    .filter(snapshot -> snapshot.getFetchedAt()
+                            .isAfter(LocalDateTime.now().minus(properties.getMaxAge())))
+                    .map(snapshot -> {
+                        try {
+                            return objectMapper.readValue(snapshot.getPayload(), type);
+                        } catch (JsonProcessingException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not load the last known details of {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.config.LookupCacheProperties;
+import com.bekassyl.loans.config.RemoteCallsProperties;
+import com.bekassyl.loans.dto.BookDto;
+import com.bekassyl.loans.dto.MemberDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through access to book and member details. Results are kept in bounded, TTL-evicting caches which are
+ * invalidated by the change events published by the books and members services. A lookup that was already
+ * under way when a change event arrived returns its result without caching it, so the cache never keeps details
+ * older than the last event. Concurrent identical remote lookups are coalesced into one call. Fresh results are also recorded as the last known good details the
+ * fallbacks serve while a service is unavailable; such stale results are never cached here.
+ */
+@Component
+public class LookupClient {
+    private static final int BULK_LOOKUP_LIMIT = 1000;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final BooksFeignClient booksFeignClient;
+    private final MembersFeignClient membersFeignClient;
+    private final LastKnownGoodStore lastKnownGood;
+    private final Cache<String, BookDto> books;
+    private final Cache<String, MemberDto> members;
+    private final SingleFlight<String, BookDto> bookLookups;
+    private final SingleFlight<String, MemberDto> memberLookups;
+    private final SingleFlight<List<String>, List<BookDto>> bulkBookLookups;
+    private final SingleFlight<List<String>, List<MemberDto>> bulkMemberLookups;
+
+    /**
+     * Bumped by every change event for the keys of a stripe. A lookup caches its result only if the generation
+     * of the key is still the one it saw before calling out; keys sharing a stripe at worst skip caching.
+     */
+    private final AtomicLongArray bookGenerations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLongArray memberGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public LookupClient(BooksFeignClient booksFeignClient,
+                        MembersFeignClient membersFeignClient,
+                        LastKnownGoodStore lastKnownGood,
+                        LookupCacheProperties properties,
+                        RemoteCallsProperties remoteCallsProperties,
+                        MeterRegistry meterRegistry) {
+        this.booksFeignClient = booksFeignClient;
+        this.membersFeignClient = membersFeignClient;
+        this.lastKnownGood = lastKnownGood;
+        this.books = buildCache(properties.getBooks());
+        this.members = buildCache(properties.getMembers());
+
+        CaffeineCacheMetrics.monitor(meterRegistry, books, "books");
+        CaffeineCacheMetrics.monitor(meterRegistry, members, "members");
+
+        this.bookLookups = new SingleFlight<>("book", remoteCallsProperties.getDeadline(), meterRegistry);
+        this.memberLookups = new SingleFlight<>("member", remoteCallsProperties.getDeadline(), meterRegistry);
+        this.bulkBookLookups = new SingleFlight<>("books", remoteCallsProperties.getDeadline(), meterRegistry);
+        this.bulkMemberLookups = new SingleFlight<>("members", remoteCallsProperties.getDeadline(), meterRegistry);
+    }
+
+    private static <V> Cache<String, V> buildCache(LookupCacheProperties.Spec spec) {
+        return Caffeine.newBuilder()
+                .maximumSize(spec.getMaxSize())
+                .expireAfterWrite(spec.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Finds book details by isbn.
+     *
+     * @param isbn isbn to search for
+     * @return book details, or {@code null} if the books service returned none
+     */
+    public BookDto fetchBook(String isbn) {
+        BookDto bookDto = books.getIfPresent(isbn);
+
+        if (bookDto == null) {
+            bookDto = bookLookups.execute(isbn, () -> {
+                long generation = generation(bookGenerations, isbn);
+                BookDto fetched = booksFeignClient.fetchBookDetails(isbn).getBody();
+                if (fetched != null && !fetched.isStale()) {
+                    putIfCurrent(books, bookGenerations, isbn, generation, fetched);
+                    lastKnownGood.putBook(fetched);
+                }
+                return fetched;
+            });
+        }
+
+        return bookDto;
+    }
+
+    /**
+     * Finds member details by iin.
+     *
+     * @param iin iin to search for
+     * @return member details, or {@code null} if the members service returned none
+     */
+    public MemberDto fetchMember(String iin) {
+        MemberDto memberDto = members.getIfPresent(iin);
+
+        if (memberDto == null) {
+            memberDto = memberLookups.execute(iin, () -> {
+                long generation = generation(memberGenerations, iin);
+                MemberDto fetched = membersFeignClient.fetchMemberByIin(iin).getBody();
+                if (fetched != null && !fetched.isStale()) {
+                    putIfCurrent(members, memberGenerations, iin, generation, fetched);
+                    lastKnownGood.putMember(fetched);
+                }
+                return fetched;
+            });
+        }
+
+        return memberDto;
+    }
+
+    /**
+     * Finds book details for several isbns. Only the isbns missing from the cache are requested from the
+     * books service, in as few bulk calls as the endpoint limit allows.
+     *
+     * @param isbns isbns to search for
+     * @return book details keyed by isbn, isbns without a book are absent
+     */
+    public Map<String, BookDto> fetchBooks(Set<String> isbns) {
+        Map<String, BookDto> result = new HashMap<>(books.getAllPresent(isbns));
+
+        for (List<String> chunk : chunked(isbns, result.keySet())) {
+            List<BookDto> bookDtos = bulkBookLookups.execute(chunk, () -> {
+                Map<String, Long> generations = generations(bookGenerations, chunk);
+                List<BookDto> fetched = booksFeignClient.fetchBooksDetails(chunk).getBody();
+                for (BookDto bookDto : fetched) {
+                    if (!bookDto.isStale()) {
+                        putIfCurrent(books, bookGenerations, bookDto.getIsbn(),
+                                generations.getOrDefault(bookDto.getIsbn(), -1L), bookDto);
+                        lastKnownGood.putBook(bookDto);
+                    }
+                }
+                return fetched;
+            });
+            for (BookDto bookDto : bookDtos) {
+                result.put(bookDto.getIsbn(), bookDto);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds member details for several iins. Only the iins missing from the cache are requested from the
+     * members service, in as few bulk calls as the endpoint limit allows.
+     *
+     * @param iins iins to search for
+     * @return member details keyed by iin, iins without a member are absent
+     */
+    public Map<String, MemberDto> fetchMembers(Set<String> iins) {
+        Map<String, MemberDto> result = new HashMap<>(members.getAllPresent(iins));
+
+        for (List<String> chunk : chunked(iins, result.keySet())) {
+            List<MemberDto> memberDtos = bulkMemberLookups.execute(chunk, () -> {
+                Map<String, Long> generations = generations(memberGenerations, chunk);
+                List<MemberDto> fetched = membersFeignClient.fetchMembersByIin(chunk).getBody();
+                for (MemberDto memberDto : fetched) {
+                    if (!memberDto.isStale()) {
+                        putIfCurrent(members, memberGenerations, memberDto.getIin(),
+                                generations.getOrDefault(memberDto.getIin(), -1L), memberDto);
+                        lastKnownGood.putMember(memberDto);
+                    }
+                }
+                return fetched;
+            });
+            for (MemberDto memberDto : memberDtos) {
+                result.put(memberDto.getIin(), memberDto);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops cached book details.
+     *
+     * @param isbn isbn of the changed book
+     */
+    public void evictBook(String isbn) {
+        bookGenerations.incrementAndGet(stripe(isbn));
+        books.invalidate(isbn);
+    }
+
+    /**
+     * Updates the available copies of a cached book without dropping it.
+     *
+     * @param isbn            isbn of the changed book
+     * @param availableCopies current number of available copies
+     */
+    public void updateAvailableCopies(String isbn, int availableCopies) {
+        bookGenerations.incrementAndGet(stripe(isbn));
+        books.asMap().computeIfPresent(isbn, (key, bookDto) -> new BookDto(
+                bookDto.getTitle(),
+                bookDto.getAuthor(),
+                bookDto.getGenre(),
+                bookDto.getIsbn(),
+                bookDto.getTotalCopies(),
+                availableCopies,
+                bookDto.isStale()
+        ));
+    }
+
+    /**
+     * Drops cached member details.
+     *
+     * @param iin iin of the changed member
+     */
+    public void evictMember(String iin) {
+        memberGenerations.incrementAndGet(stripe(iin));
+        members.invalidate(iin);
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), GENERATION_STRIPES);
+    }
+
+    private static long generation(AtomicLongArray generations, String key) {
+        return generations.get(stripe(key));
+    }
+
+    private static Map<String, Long> generations(AtomicLongArray generations, List<String> keys) {
+        Map<String, Long> result = new HashMap<>(keys.size() * 2);
+
+        for (String key : keys) {
+            result.put(key, generation(generations, key));
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the details unless a change event for the key arrived since {@code generation} was read. The check
+     * runs atomically with the write, and events bump the generation before evicting, so a late write can never
+     * follow an eviction.
+     */
+    private static <V> void putIfCurrent(Cache<String, V> cache, AtomicLongArray generations, String key,
+                                         long generation, V value) {
+        cache.asMap().compute(key, (k, cached) -> generation(generations, k) == generation ? value : cached);
+    }
+
+    private static List<List<String>> chunked(Set<String> keys, Set<String> present) {
+        List<String> missing = keys.stream().filter(key -> !present.contains(key)).sorted().toList();
+        List<List<String>> chunks = new ArrayList<>();
+
+        for (int from = 0; from < missing.size(); from += BULK_LOOKUP_LIMIT) {
+            chunks.add(missing.subList(from, Math.min(from + BULK_LOOKUP_LIMIT, missing.size())));
+        }
+
+        return chunks;
+    }
+}
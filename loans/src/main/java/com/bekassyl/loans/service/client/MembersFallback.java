@@ -1,18 +1,50 @@
 package com.bekassyl.loans.service.client;
 
 import com.bekassyl.loans.dto.MemberDto;
+import com.bekassyl.loans.exception.DependencyUnavailableException;
+import feign.FeignException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.stereotype.Component;
 
-@Component
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Answers lookups with the last known details, marked stale, when the members service cannot be reached; a
+ * missing member stays missing.
+ */
 public class MembersFallback implements MembersFeignClient {
+    private final Throwable cause;
+    private final LastKnownGoodStore lastKnownGood;
+
+    public MembersFallback(Throwable cause, LastKnownGoodStore lastKnownGood) {
+        this.cause = cause;
+        this.lastKnownGood = lastKnownGood;
+    }
+
     @Override
     public ResponseEntity<MemberDto> fetchMemberByCardNumber(String cardNumber) {
-        return null;
+        if (cause instanceof FeignException.NotFound) {
+            return ResponseEntity.notFound().build();
+        }
+
+        throw new DependencyUnavailableException("members", cause);
     }
 
     @Override
     public ResponseEntity<MemberDto> fetchMemberByIin(String iin) {
-        return null;
+        if (cause instanceof FeignException.NotFound) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return lastKnownGood.findMember(iin)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new DependencyUnavailableException("members", cause));
+    }
+
+    @Override
+    public ResponseEntity<List<MemberDto>> fetchMembersByIin(Collection<String> iins) {
+        return lastKnownGood.findMembers(iins)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new DependencyUnavailableException("members", cause));
     }
 }
@@ -0,0 +1,16 @@
+package com.bekassyl.loans.service.client;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.openfeign.FallbackFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class MembersFallbackFactory implements FallbackFactory<MembersFallback> {
+    private final LastKnownGoodStore lastKnownGood;
+
+    @Override
+    public MembersFallback create(Throwable cause) {
+        return new MembersFallback(cause, lastKnownGood);
+    }
+}
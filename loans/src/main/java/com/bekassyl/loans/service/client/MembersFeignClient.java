@@ -4,13 +4,22 @@ import com.bekassyl.loans.dto.MemberDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "members", fallback = MembersFallback.class)
+import java.util.Collection;
+import java.util.List;
+
+@FeignClient(name = "members", fallbackFactory = MembersFallbackFactory.class,
+        configuration = {PooledTransportConfiguration.class, CborRpcConfiguration.class})
 public interface MembersFeignClient {
     @GetMapping(value = "/members/api/fetch-by-card", consumes = "application/json")
     public ResponseEntity<MemberDto> fetchMemberByCardNumber(@RequestParam("cardNumber") String cardNumber);
 
     @GetMapping(value = "/members/api/fetch-by-iin", consumes = "application/json")
     public ResponseEntity<MemberDto> fetchMemberByIin(@RequestParam("iin") String iin);
-}
\ No newline at end of file
+
+    @PostMapping(value = "/members/api/fetch-bulk-by-iin", consumes = "application/json")
+    public ResponseEntity<List<MemberDto>> fetchMembersByIin(@RequestBody Collection<String> iins);
+}
@@ -0,0 +1,135 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.config.ConcurrencyLimitProperties;
+import com.bekassyl.loans.config.FeignTransportProperties;
+import feign.Client;
+import feign.Request;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.cloud.openfeign.loadbalancer.FeignBlockingLoadBalancerClient;
+import org.springframework.cloud.openfeign.loadbalancer.LoadBalancerFeignRequestTransformer;
+import org.springframework.context.annotation.Bean;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives each Feign client its own pooled keep-alive Apache HttpClient 5 transport, sized and timed by
+ * {@code loans.feign-transport}, behind the usual load balancer. Exposes the pool gauges
+ * ({@code httpcomponents.httpclient.pool.*}, where {@code pending} are the requests waiting for a lease)
+ * and {@code feign.http.requests} tagged with whether the request reused a pooled connection. Calls to each
+ * target are bounded by an {@link AdaptiveConcurrencyLimiter}.
+ * <p>
+ * Not a {@code @Configuration} on purpose: it is only applied through {@code @FeignClient(configuration = ...)}.
+ */
+public class PooledTransportConfiguration {
+    @Bean
+    public PoolingHttpClientConnectionManager feignConnectionManager(
+            @Value("${spring.cloud.openfeign.client.name}") String clientName,
+            FeignTransportProperties properties,
+            MeterRegistry meterRegistry) {
+        FeignTransportProperties.Pool pool = properties.forClient(clientName);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(pool.getMaxConnections())
+                .setMaxConnPerRoute(pool.getMaxConnectionsPerInstance())
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(pool.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(pool.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.of(pool.getValidateAfterInactivity()))
+                        .setTimeToLive(TimeValue.of(pool.getTimeToLive()))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, clientName).bindTo(meterRegistry);
+
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient feignHttpClient(
+            @Value("${spring.cloud.openfeign.client.name}") String clientName,
+            PoolingHttpClientConnectionManager feignConnectionManager,
+            FeignTransportProperties properties,
+            MeterRegistry meterRegistry) {
+        FeignTransportProperties.Pool pool = properties.forClient(clientName);
+
+        Counter reused = requestCounter(meterRegistry, clientName, "reused");
+        Counter opened = requestCounter(meterRegistry, clientName, "new");
+
+        return HttpClients.custom()
+                .setConnectionManager(feignConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(pool.getLeaseTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(pool.getIdleTimeout()))
+                .addResponseInterceptorLast((response, entity, context) -> {
+                    EndpointDetails endpoint = HttpCoreContext.cast(context).getEndpointDetails();
+
+                    if (endpoint != null && endpoint.getRequestCount() > 1) {
+                        reused.increment();
+                    } else {
+                        opened.increment();
+                    }
+                })
+                .build();
+    }
+
+    @Bean
+    public Request.Options feignRequestOptions(@Value("${spring.cloud.openfeign.client.name}") String clientName,
+                                               FeignTransportProperties properties) {
+        FeignTransportProperties.Pool pool = properties.forClient(clientName);
+
+        return new Request.Options(pool.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS,
+                pool.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS, true);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter feignConcurrencyLimiter(
+            @Value("${spring.cloud.openfeign.client.name}") String clientName,
+            ConcurrencyLimitProperties properties,
+            MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyLimiter(clientName, properties, meterRegistry);
+    }
+
+    @Bean
+    public Client feignClient(CloseableHttpClient feignHttpClient,
+                              LoadBalancerClient loadBalancerClient,
+                              LoadBalancerClientFactory loadBalancerClientFactory,
+                              ObjectProvider<LoadBalancerFeignRequestTransformer> transformers,
+                              AdaptiveConcurrencyLimiter feignConcurrencyLimiter,
+                              ConcurrencyLimitProperties concurrencyLimitProperties) {
+        Client client = new FeignBlockingLoadBalancerClient(new ApacheHttp5Client(feignHttpClient),
+                loadBalancerClient, loadBalancerClientFactory, transformers.orderedStream().toList());
+
+        return concurrencyLimitProperties.isEnabled()
+                ? new ConcurrencyLimitedClient(client, feignConcurrencyLimiter)
+                : client;
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String clientName, String connection) {
+        return Counter.builder("feign.http.requests")
+                .description("Feign requests by whether they reused a pooled connection")
+                .tag("client", clientName)
+                .tag("connection", connection)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,103 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.config.RemoteCallsProperties;
+import com.bekassyl.loans.exception.ConcurrencyLimitExceededException;
+import com.bekassyl.loans.exception.RemoteCallTimeoutException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs calls to the books and members services on a bounded pool, so that independent lookups of one
+ * request run in parallel and share a single deadline. When the pool and its queue are full the call is
+ * rejected with {@link ConcurrencyLimitExceededException}, so a saturated pool sheds requests instead of
+ * running their calls on request threads.
+ * <p>
+ * A call that misses the deadline is not interrupted: a blocking Feign call does not react to interrupts, so
+ * it keeps its pool thread until the read timeout of the Feign transport ends it. That timeout, not the
+ * deadline, bounds how long a slow downstream holds a pool thread.
+ */
+@Component
+public class RemoteCallExecutor {
+    private final RemoteCallsProperties properties;
+    private final ThreadPoolTaskExecutor executor;
+
+    public RemoteCallExecutor(RemoteCallsProperties properties) {
+        this.properties = properties;
+
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setThreadNamePrefix("remote-call-");
+        this.executor.setCorePoolSize(properties.getCorePoolSize());
+        this.executor.setMaxPoolSize(properties.getMaxPoolSize());
+        this.executor.setQueueCapacity(properties.getQueueCapacity());
+        this.executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the point in time by which all remote calls of the current request must complete.
+     *
+     * @return deadline for the current request
+     */
+    public Instant deadline() {
+        return Instant.now().plus(properties.getDeadline());
+    }
+
+    /**
+     * Starts a remote call on the remote calls pool.
+     *
+     * @param call remote call to run
+     * @return future completed with the result of the call
+     * @throws ConcurrencyLimitExceededException if the pool and its queue are full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (TaskRejectedException e) {
+            throw new ConcurrencyLimitExceededException(
+                    "the remote calls pool", properties.getMaxPoolSize() + properties.getQueueCapacity());
+        }
+    }
+
+    /**
+     * Waits for a remote call started with {@link #submit(Supplier)} until the given deadline. A call still
+     * running at the deadline is left to finish or to fail on the Feign read timeout, its result is dropped.
+     *
+     * @param future   future of the remote call
+     * @param deadline deadline of the current request
+     * @return result of the remote call
+     * @throws RemoteCallTimeoutException if the call does not complete before the deadline
+     */
+    public <T> T await(CompletableFuture<T> future, Instant deadline) {
+        long remainingNanos = Math.max(Duration.between(Instant.now(), deadline).toNanos(), 0);
+
+        try {
+            return future.get(remainingNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new RemoteCallTimeoutException(properties.getDeadline());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a remote call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.exception.RemoteCallTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls: the first caller for a key makes the call, callers arriving while
+ * it is in flight wait for it and share its result or exception. Nothing is kept once the call completes,
+ * so a later caller always makes a fresh call. Waiters give up after the remote call deadline, so a call that
+ * hangs holds up only its own caller.
+ *
+ * @param <K> type of the call key
+ * @param <V> type of the call result
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter calls;
+    private final Counter coalesced;
+    private final Duration timeout;
+
+    public SingleFlight(String name, Duration timeout, MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.calls = Counter.builder("loans.lookup.calls")
+                .description("Remote lookups made")
+                .tag("lookup", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("loans.lookup.coalesced")
+                .description("Lookups that waited for an identical in-flight call instead of making their own")
+                .tag("lookup", name)
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, timeout);
+        }
+
+        calls.increment();
+
+        try {
+            V result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight, Duration timeout) {
+        try {
+            return flight.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new RemoteCallTimeoutException(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
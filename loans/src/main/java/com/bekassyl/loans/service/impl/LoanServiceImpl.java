@@ -1,131 +1,436 @@
 package com.bekassyl.loans.service.impl;
 
+import com.bekassyl.loans.config.CheckoutProperties;
+import com.bekassyl.loans.config.LoanExportProperties;
 import com.bekassyl.loans.dto.*;
+import com.bekassyl.loans.dto.request.BulkLoanRequestDto;
 import com.bekassyl.loans.dto.request.LoanRequestDto;
+import com.bekassyl.loans.dto.response.BulkLoanResponseDto;
+import com.bekassyl.loans.dto.response.CheckoutResponseDto;
 import com.bekassyl.loans.dto.response.LoanDetailsResponseDto;
+import com.bekassyl.loans.dto.response.LoanPageResponseDto;
+import com.bekassyl.loans.entity.CheckoutSaga;
 import com.bekassyl.loans.entity.Loan;
+import com.bekassyl.loans.exception.BookAlreadyBorrowedException;
+import com.bekassyl.loans.exception.ConcurrencyLimitExceededException;
+import com.bekassyl.loans.exception.InvalidCursorException;
+import com.bekassyl.loans.outbox.OutboxWriter;
+import com.bekassyl.loans.repository.CheckoutSagaRepository;
+import com.bekassyl.loans.repository.LoanArchiveRepository;
+import com.bekassyl.loans.repository.LoanCursor;
 import com.bekassyl.loans.repository.LoanRepository;
+import com.bekassyl.loans.repository.LoanSpecifications;
 import com.bekassyl.loans.service.ILoanService;
 import com.bekassyl.loans.service.client.BooksFeignClient;
-import com.bekassyl.loans.service.client.MembersFeignClient;
+import com.bekassyl.loans.service.client.LookupClient;
+import com.bekassyl.loans.service.client.RemoteCallExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import com.bekassyl.loans.exception.ResourceNotFoundException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LoanServiceImpl implements ILoanService {
+    private static final String COMMUNICATION_UPDATED_BY = "MESSAGE";
+    private static final String ACTIVE_LOAN_CONSTRAINT = "ux_loans_active_loan";
+    private static final Set<Loan.LoanStatus> ACTIVE_STATUSES = EnumSet.of(Loan.LoanStatus.BORROWED, Loan.LoanStatus.OVERDUE);
+
+    private static final Comparator<Loan> ID_COMPARATOR = Comparator.comparing(Loan::getId).reversed();
+    private static final Comparator<Loan> KEYSET_COMPARATOR =
+            Comparator.comparing(Loan::getLoanDate).reversed().thenComparing(ID_COMPARATOR);
+
     private final LoanRepository loanRepository;
+    private final LoanArchiveRepository loanArchiveRepository;
     private final BooksFeignClient booksFeignClient;
-    private final MembersFeignClient membersFeignClient;
-    private final StreamBridge streamBridge;
+    private final LookupClient lookupClient;
+    private final OutboxWriter outboxWriter;
+    private final RemoteCallExecutor remoteCallExecutor;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final LoanExportProperties exportProperties;
+    private final CheckoutSagaRepository checkoutSagaRepository;
+    private final CheckoutProperties checkoutProperties;
 
     /**
-     * Finds the list of loans by book isbn.
+     * Finds one page of loans by book isbn, newest first.
      *
      * @param bookIsbn isbn to search for
-     * @return DTO containing loans for the given book isbn
-     * @throws ResourceNotFoundException if loans are not found
+     * @param filter   optional status and loan date range
+     * @param cursor   nextCursor of the previous page, or {@code null} for the first page
+     * @param size     maximum number of loans in the page
+     * @return DTO containing the loans of the page and the cursor of the next page
+     * @throws InvalidCursorException if the cursor cannot be decoded
      */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     @Override
-    public List<LoanDto> fetchLoansByBookIsbn(String bookIsbn) {
-        List<Loan> loans = loanRepository.findByBookIsbn(bookIsbn);
-
-        return getLoanDtos(loans);
+    public LoanPageResponseDto fetchLoansByBookIsbn(String bookIsbn, LoanFilter filter, String cursor, int size) {
+        return fetchLoanPage(bookIsbn, null, filter, cursor, size);
     }
 
     /**
-     * Finds the list of loans by member iin.
+     * Finds one page of loans by member iin, newest first.
      *
      * @param memberIin member iin to search for
-     * @return List of DTOs containing loans for the given member iin
-     * @throws ResourceNotFoundException if loans are not found
+     * @param filter    optional status and loan date range
+     * @param cursor    nextCursor of the previous page, or {@code null} for the first page
+     * @param size      maximum number of loans in the page
+     * @return DTO containing the loans of the page and the cursor of the next page
+     * @throws InvalidCursorException if the cursor cannot be decoded
      */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     @Override
-    public List<LoanDto> fetchLoansByMemberIin(String memberIin) {
-        List<Loan> loans = loanRepository.findByMemberIin(memberIin);
+    public LoanPageResponseDto fetchLoansByMemberIin(String memberIin, LoanFilter filter, String cursor, int size) {
+        return fetchLoanPage(null, memberIin, filter, cursor, size);
+    }
+
+    /**
+     * Reads the page from the loans table and from {@code loans_archive} and merges the two. Both reads see one
+     * snapshot, so a loan moved to the archive in between is returned exactly once.
+     */
+    private LoanPageResponseDto fetchLoanPage(String bookIsbn, String memberIin, LoanFilter filter, String cursor,
+                                              int size) {
+        LoanCursor after = cursor == null || cursor.isBlank() ? null : LoanCursor.decode(cursor);
+
+        Specification<Loan> specification = specification(bookIsbn, memberIin, filter)
+                .and(LoanSpecifications.after(after));
 
-        return getLoanDtos(loans);
+        List<Loan> loans = loanRepository.findBy(specification, query -> query
+                .sortBy(LoanSpecifications.KEYSET_ORDER)
+                .limit(size + 1)
+                .all());
+
+        if (LoanArchiveRepository.mayMatch(filter)) {
+            List<Loan> archived = loanArchiveRepository.findPage(bookIsbn, memberIin, filter, after, size + 1);
+
+            if (!archived.isEmpty()) {
+                loans = Stream.concat(loans.stream(), archived.stream())
+                        .sorted(KEYSET_COMPARATOR)
+                        .limit(size + 1)
+                        .toList();
+            }
+        }
+
+        String nextCursor = null;
+        if (loans.size() > size) {
+            loans = loans.subList(0, size);
+            nextCursor = LoanCursor.of(loans.get(size - 1)).encode();
+        }
+
+        return new LoanPageResponseDto(getLoanDtos(loans), nextCursor);
     }
 
+    /**
+     * Maps loans to DTOs. Book and member details come from the snapshot stored with the loan; only loans
+     * without a snapshot are enriched with a bulk lookup.
+     */
     private List<LoanDto> getLoanDtos(List<Loan> loans) {
-        List<LoanDto> loanDtos = new ArrayList<>();
+        Instant deadline = remoteCallExecutor.deadline();
+        Set<String> isbns = loans.stream()
+                .filter(loan -> loan.getBookTitle() == null)
+                .map(Loan::getBookIsbn)
+                .collect(Collectors.toSet());
+        Set<String> iins = loans.stream()
+                .filter(loan -> loan.getMemberCardNumber() == null)
+                .map(Loan::getMemberIin)
+                .collect(Collectors.toSet());
+
+        CompletableFuture<Map<String, BookDto>> booksFuture = isbns.isEmpty()
+                ? CompletableFuture.completedFuture(Map.of())
+                : remoteCallExecutor.submit(() -> lookupClient.fetchBooks(isbns));
+        CompletableFuture<Map<String, MemberDto>> membersFuture = iins.isEmpty()
+                ? CompletableFuture.completedFuture(Map.of())
+                : remoteCallExecutor.submit(() -> lookupClient.fetchMembers(iins));
+
+        Map<String, BookDto> books = remoteCallExecutor.await(booksFuture, deadline);
+        Map<String, MemberDto> members = remoteCallExecutor.await(membersFuture, deadline);
+
+        List<LoanDto> loanDtos = new ArrayList<>(loans.size());
 
         for (Loan loan : loans) {
-            MemberDto memberDto = membersFeignClient.fetchMemberByIin(loan.getMemberIin()).getBody();
-            BookDto bookDto = booksFeignClient.fetchBookDetails(loan.getBookIsbn()).getBody();
+            loanDtos.add(toLoanDto(loan, books.get(loan.getBookIsbn()), members.get(loan.getMemberIin())));
+        }
+
+        return loanDtos;
+    }
 
-            LoanDto loanDto = new LoanDto();
-            loanDto.setId(loan.getId());
+    private LoanDto toLoanDto(Loan loan, BookDto bookDto, MemberDto memberDto) {
+        LoanDto loanDto = new LoanDto();
+        loanDto.setId(loan.getId());
+        loanDto.setIsbn(loan.getBookIsbn());
+        loanDto.setIin(loan.getMemberIin());
+        if (loan.getBookTitle() != null) {
+            loanDto.setTitle(loan.getBookTitle());
+            loanDto.setAuthor(loan.getBookAuthor());
+        } else if (bookDto != null) {
             loanDto.setTitle(bookDto.getTitle());
             loanDto.setAuthor(bookDto.getAuthor());
-            loanDto.setIsbn(bookDto.getIsbn());
+        }
+        if (loan.getMemberCardNumber() != null) {
+            loanDto.setCardNumber(loan.getMemberCardNumber());
+            loanDto.setFirstName(loan.getMemberFirstName());
+            loanDto.setLastName(loan.getMemberLastName());
+        } else if (memberDto != null) {
             loanDto.setCardNumber(memberDto.getCardNumber());
             loanDto.setFirstName(memberDto.getFirstName());
             loanDto.setLastName(memberDto.getLastName());
-            loanDto.setIin(memberDto.getIin());
-            loanDto.setLoanDate(loan.getLoanDate());
-            loanDto.setReturnDate(loan.getReturnDate());
-            loanDto.setStatus(loan.getStatus());
+        }
+        loanDto.setLoanDate(loan.getLoanDate());
+        loanDto.setReturnDate(loan.getReturnDate());
+        loanDto.setStatus(loan.getStatus());
+
+        return loanDto;
+    }
+
+    /**
+     * Writes the matching loans to the output as newline-delimited JSON, newest first: by loan date when
+     * restricted to a book or member, by id otherwise, so that either way rows come straight off an index.
+     * Loans are read from a database cursor and written in batches, so memory use does not depend on the
+     * number of exported loans. Archived loans are read the same way and merged in.
+     *
+     * @param bookIsbn  optional isbn to restrict the export to
+     * @param memberIin optional member iin to restrict the export to
+     * @param filter    optional status and loan date range
+     * @param enrich    whether to add book and member details, looked up once per batch
+     * @param out       stream to write to
+     * @throws IOException if writing to the output fails
+     */
+    @Override
+    public void exportLoans(String bookIsbn, String memberIin, LoanFilter filter, boolean enrich,
+                            OutputStream out) throws IOException {
+        Specification<Loan> exportSpecification = specification(bookIsbn, memberIin, filter);
+        boolean byId = bookIsbn == null && memberIin == null;
+        Sort order = byId ? LoanSpecifications.ID_ORDER : LoanSpecifications.KEYSET_ORDER;
+        Comparator<Loan> comparator = byId ? ID_COMPARATOR : KEYSET_COMPARATOR;
+        boolean withArchive = LoanArchiveRepository.mayMatch(filter);
+        ObjectWriter writer = objectMapper.writerFor(LoanDto.class);
+        int batchSize = exportProperties.getBatchSize();
+        int fetchSize = exportProperties.getFetchSize();
+
+        // one snapshot for the loans table and the archive, so a loan archived during the export is written once
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
 
-            loanDtos.add(loanDto);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Loan> loans = loanRepository.streamAll(exportSpecification, order, fetchSize);
+                     Stream<Loan> archived = withArchive
+                             ? loanArchiveRepository.stream(bookIsbn, memberIin, filter, fetchSize)
+                             : Stream.empty()) {
+                    List<Loan> batch = new ArrayList<>(batchSize);
+                    Iterator<Loan> iterator = merge(loans.iterator(), archived.iterator(), comparator);
+
+                    while (iterator.hasNext()) {
+                        batch.add(iterator.next());
+
+                        if (batch.size() == batchSize || !iterator.hasNext()) {
+                            writeExportBatch(batch, enrich, writer, out);
+                            batch.clear();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
-        return loanDtos;
+    private static Specification<Loan> specification(String bookIsbn, String memberIin, LoanFilter filter) {
+        Specification<Loan> specification = LoanSpecifications.matches(filter);
+        if (bookIsbn != null) {
+            specification = specification.and(LoanSpecifications.hasBookIsbn(bookIsbn));
+        }
+        if (memberIin != null) {
+            specification = specification.and(LoanSpecifications.hasMemberIin(memberIin));
+        }
+
+        return specification;
     }
 
     /**
-     * Saves the new loan.
+     * Merges two iterators that are each sorted by the comparator into one sorted iterator.
+     */
+    private static Iterator<Loan> merge(Iterator<Loan> first, Iterator<Loan> second, Comparator<Loan> comparator) {
+        return new Iterator<>() {
+            private Loan nextFirst = first.hasNext() ? first.next() : null;
+            private Loan nextSecond = second.hasNext() ? second.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return nextFirst != null || nextSecond != null;
+            }
+
+            @Override
+            public Loan next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Loan loan;
+                if (nextSecond == null || nextFirst != null && comparator.compare(nextFirst, nextSecond) <= 0) {
+                    loan = nextFirst;
+                    nextFirst = first.hasNext() ? first.next() : null;
+                } else {
+                    loan = nextSecond;
+                    nextSecond = second.hasNext() ? second.next() : null;
+                }
+
+                return loan;
+            }
+        };
+    }
+
+    private void writeExportBatch(List<Loan> batch, boolean enrich, ObjectWriter writer, OutputStream out)
+            throws IOException {
+        List<LoanDto> loanDtos = enrich
+                ? getLoanDtos(batch)
+                : batch.stream().map(loan -> toLoanDto(loan, null, null)).toList();
+
+        for (LoanDto loanDto : loanDtos) {
+            out.write(writer.writeValueAsBytes(loanDto));
+            out.write('\n');
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Saves the new loan. The loan row is inserted first and the unique index on active loans rejects a
+     * second active loan of the same book by the same member; the book copy is taken only afterwards.
      *
      * @param requestDto request loan data transfer object
      * @return LoanDetailsResponseDto loan details data transfer object
-     * @throws ResourceNotFoundException if there are no books available
+     * @throws BookAlreadyBorrowedException if the member has already borrowed this book
+     * @throws ResourceNotFoundException if there are no books available or the book or member is not found
      */
     @Override
     public LoanDetailsResponseDto createLoan(LoanRequestDto requestDto) {
-        boolean isBorrowed = loanRepository.existsByBookIsbnAndMemberIinAndStatus(
-                requestDto.getBookIsbn(), requestDto.getMemberIin(), Loan.LoanStatus.BORROWED);
+        Instant deadline = remoteCallExecutor.deadline();
+        CompletableFuture<BookDto> bookFuture = remoteCallExecutor.submit(
+                () -> lookupClient.fetchBook(requestDto.getBookIsbn()));
+        CompletableFuture<MemberDto> memberFuture = remoteCallExecutor.submit(
+                () -> lookupClient.fetchMember(requestDto.getMemberIin()));
 
-        if (isBorrowed) {
-            throw new ResourceNotFoundException(
-                    "Loan", "a member has already borrowed this book",
-                    "book isbn: " + requestDto.getBookIsbn() + ", " + "member iin: " + requestDto.getMemberIin()
-            );
-        }
+        Loan loan = insertLoan(requestDto);
 
-        boolean loanBook = booksFeignClient.loanBook(requestDto.getBookIsbn());
+        boolean loanBook;
+        try {
+            loanBook = remoteCallExecutor.await(
+                    remoteCallExecutor.submit(() -> booksFeignClient.loanBook(requestDto.getBookIsbn())), deadline);
+        } catch (RuntimeException e) {
+            loanRepository.deleteById(loan.getId());
+            throw e;
+        }
 
         if (!loanBook) {
+            loanRepository.deleteById(loan.getId());
             throw new ResourceNotFoundException(
                     "Loan", "no available books",
                     "book isbn: " + requestDto.getBookIsbn() + ", " + "member iin: " + requestDto.getMemberIin()
             );
         }
 
-        BookDto bookDto = booksFeignClient.fetchBookDetails(requestDto.getBookIsbn()).getBody();
-        MemberDto memberDto = membersFeignClient.fetchMemberByIin(requestDto.getMemberIin()).getBody();
+        BookDto bookDto;
+        MemberDto memberDto;
+        try {
+            bookDto = remoteCallExecutor.await(bookFuture, deadline);
+            memberDto = remoteCallExecutor.await(memberFuture, deadline);
+
+            if (bookDto == null) {
+                throw new ResourceNotFoundException("Book", "ISBN", requestDto.getBookIsbn());
+            }
+            if (memberDto == null) {
+                throw new ResourceNotFoundException("Member", "IIN", requestDto.getMemberIin());
+            }
+        } catch (RuntimeException e) {
+            loanRepository.deleteById(loan.getId());
+            returnCopy(requestDto.getBookIsbn(), e);
+            throw e;
+        }
 
-        Loan loan = saveLoanTransactional(memberDto, bookDto);
+        loan.setBookTitle(bookDto.getTitle());
+        loan.setBookAuthor(bookDto.getAuthor());
+        loan.setMemberCardNumber(memberDto.getCardNumber());
+        loan.setMemberFirstName(memberDto.getFirstName());
+        loan.setMemberLastName(memberDto.getLastName());
 
-        sendLoanCreated(loan, bookDto, memberDto);
+        Loan createdLoan = new TransactionTemplate(transactionManager).execute(status -> {
+            Loan savedLoan = loanRepository.save(loan);
+            sendLoanCreated(savedLoan, bookDto, memberDto);
+            return savedLoan;
+        });
 
         return new LoanDetailsResponseDto(
-                loan.getLoanDate(),
-                loan.getReturnDate(),
-                loan.getStatus(),
+                createdLoan.getLoanDate(),
+                createdLoan.getReturnDate(),
+                createdLoan.getStatus(),
                 memberDto,
                 bookDto
         );
     }
 
+    /**
+     * Hands the copy taken for a loan that could not be completed back to the books service. A failure is
+     * attached to the original error instead of replacing it.
+     */
+    private void returnCopy(String bookIsbn, RuntimeException cause) {
+        try {
+            booksFeignClient.returnBook(bookIsbn);
+        } catch (RuntimeException e) {
+            log.warn("Returning the copy of the book {} after a failed loan failed", bookIsbn, e);
+            cause.addSuppressed(e);
+        }
+    }
+
+    private Loan insertLoan(LoanRequestDto requestDto) {
+        Loan loan = new Loan();
+
+        loan.setBookIsbn(requestDto.getBookIsbn());
+        loan.setMemberIin(requestDto.getMemberIin());
+        loan.setLoanDate(LocalDate.now());
+        loan.setReturnDate(LocalDate.now().plusDays(7));
+        loan.setStatus(Loan.LoanStatus.BORROWED);
+
+        try {
+            return loanRepository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && ACTIVE_LOAN_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+                throw new BookAlreadyBorrowedException(
+                        "A member has already borrowed this book: book isbn: " + requestDto.getBookIsbn()
+                                + ", member iin: " + requestDto.getMemberIin());
+            }
+            throw e;
+        }
+    }
+
     private void sendLoanCreated(Loan loan, BookDto bookDto, MemberDto memberDto) {
         LoanMsgDto loanMsgDto = new LoanMsgDto(
                 memberDto.getCardNumber(),
@@ -138,15 +443,96 @@ public class LoanServiceImpl implements ILoanService {
                 loan.getLoanDate()
         );
 
-        log.info("Sending a request to the sendLoanCreated with details: {}", loanMsgDto);
+        log.info("Adding a sendLoanCreated event to the outbox with details: {}", loanMsgDto);
+
+        outboxWriter.add("sendLoanCreated-out-0", memberDto.getIin(), loanMsgDto);
+    }
+
+    /**
+     * Loans several books to one member. The member and books are looked up once, the loans are inserted in
+     * one transaction and the copies are taken with one call to the books service; the member gets one
+     * notification for all loaned books.
+     *
+     * @param requestDto bulk loan request data transfer object
+     * @return DTO containing the outcome for each book
+     * @throws ResourceNotFoundException if a member is not found
+     * @throws BookAlreadyBorrowedException if a concurrent request loaned one of the books to the member
+     */
+    @Override
+    public BulkLoanResponseDto bulkCreateLoans(BulkLoanRequestDto requestDto) {
+        Instant deadline = remoteCallExecutor.deadline();
+        String memberIin = requestDto.getMemberIin();
+        Set<String> bookIsbns = new LinkedHashSet<>(requestDto.getBookIsbns());
+
+        CompletableFuture<MemberDto> memberFuture = remoteCallExecutor.submit(() -> lookupClient.fetchMember(memberIin));
+        CompletableFuture<Map<String, BookDto>> booksFuture = remoteCallExecutor.submit(() -> lookupClient.fetchBooks(bookIsbns));
+
+        Set<String> borrowed = loanRepository.findByMemberIinAndBookIsbnInAndStatusIn(memberIin, bookIsbns, ACTIVE_STATUSES)
+                .stream()
+                .map(Loan::getBookIsbn)
+                .collect(Collectors.toSet());
 
-        boolean result = streamBridge.send("sendLoanCreated-out-0", loanMsgDto);
+        MemberDto memberDto = remoteCallExecutor.await(memberFuture, deadline);
+        Map<String, BookDto> books = remoteCallExecutor.await(booksFuture, deadline);
 
-        log.info("Is the request successfully triggered?: {}", result);
+        if (memberDto == null) {
+            throw new ResourceNotFoundException("Member", "IIN", memberIin);
+        }
+
+        Map<String, BulkLoanItemDto> items = new LinkedHashMap<>();
+        List<Loan> loans = new ArrayList<>();
+
+        for (String bookIsbn : bookIsbns) {
+            BookDto bookDto = books.get(bookIsbn);
+
+            if (borrowed.contains(bookIsbn)) {
+                items.put(bookIsbn, BulkLoanItemDto.failed(bookIsbn, "a member has already borrowed this book"));
+            } else if (bookDto == null) {
+                items.put(bookIsbn, BulkLoanItemDto.failed(bookIsbn, "book not found"));
+            } else {
+                items.put(bookIsbn, null);
+                loans.add(newLoan(bookDto, memberDto));
+            }
+        }
+
+        if (!loans.isEmpty()) {
+            List<Loan> inserted = insertLoans(loans, memberIin);
+            List<String> insertedIsbns = inserted.stream().map(Loan::getBookIsbn).toList();
+
+            Set<String> loaned;
+            try {
+                loaned = remoteCallExecutor.await(
+                        remoteCallExecutor.submit(() -> booksFeignClient.loanBooks(insertedIsbns)), deadline);
+            } catch (RuntimeException e) {
+                loanRepository.deleteAllInBatch(inserted);
+                throw e;
+            }
+
+            Map<Boolean, List<Loan>> outcome = inserted.stream()
+                    .collect(Collectors.partitioningBy(loan -> loaned.contains(loan.getBookIsbn())));
+
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                if (!outcome.get(false).isEmpty()) {
+                    loanRepository.deleteAllInBatch(outcome.get(false));
+                }
+                if (!outcome.get(true).isEmpty()) {
+                    sendLoansCreated(outcome.get(true), memberDto);
+                }
+            });
+
+            for (Loan loan : outcome.get(true)) {
+                items.put(loan.getBookIsbn(), new BulkLoanItemDto(loan.getBookIsbn(), BulkLoanItemDto.Outcome.LOANED,
+                        null, loan.getLoanDate(), loan.getReturnDate()));
+            }
+            for (Loan loan : outcome.get(false)) {
+                items.put(loan.getBookIsbn(), BulkLoanItemDto.failed(loan.getBookIsbn(), "no available books"));
+            }
+        }
+
+        return new BulkLoanResponseDto(memberIin, new ArrayList<>(items.values()));
     }
 
-    @Transactional
-    protected Loan saveLoanTransactional(MemberDto memberDto, BookDto bookDto) {
+    private Loan newLoan(BookDto bookDto, MemberDto memberDto) {
         Loan loan = new Loan();
 
         loan.setBookIsbn(bookDto.getIsbn());
@@ -154,8 +540,302 @@ public class LoanServiceImpl implements ILoanService {
         loan.setLoanDate(LocalDate.now());
         loan.setReturnDate(LocalDate.now().plusDays(7));
         loan.setStatus(Loan.LoanStatus.BORROWED);
+        loan.setBookTitle(bookDto.getTitle());
+        loan.setBookAuthor(bookDto.getAuthor());
+        loan.setMemberCardNumber(memberDto.getCardNumber());
+        loan.setMemberFirstName(memberDto.getFirstName());
+        loan.setMemberLastName(memberDto.getLastName());
 
-        return loanRepository.save(loan);
+        return loan;
+    }
+
+    private List<Loan> insertLoans(List<Loan> loans, String memberIin) {
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> loanRepository.saveAll(loans));
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && ACTIVE_LOAN_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+                throw new BookAlreadyBorrowedException(
+                        "A member has already borrowed one of these books: member iin: " + memberIin);
+            }
+            throw e;
+        }
+    }
+
+    private void sendLoansCreated(List<Loan> loans, MemberDto memberDto) {
+        LoanBatchMsgDto loanBatchMsgDto = new LoanBatchMsgDto(
+                memberDto.getCardNumber(),
+                String.format("%s %s", memberDto.getFirstName(), memberDto.getLastName()),
+                memberDto.getIin(),
+                memberDto.getMobileNumber(),
+                memberDto.getEmail(),
+                loans.stream().map(loan -> String.format("%s, %s", loan.getBookTitle(), loan.getBookAuthor())).toList(),
+                loans.stream().map(Loan::getBookIsbn).toList(),
+                loans.get(0).getLoanDate()
+        );
+
+        log.info("Adding a sendLoansCreated event to the outbox with details: {}", loanBatchMsgDto);
+
+        outboxWriter.add("sendLoansCreated-out-0", memberDto.getIin(), loanBatchMsgDto);
+    }
+
+    /**
+     * Returns several books of one member. The loans are marked returned in one transaction and the copies
+     * are put back with one call to the books service. Loans whose copies the books service did not take back
+     * are restored to their previous state and reported as failed; if the call itself fails, all of them are.
+     *
+     * @param requestDto bulk loan request data transfer object
+     * @return DTO containing the outcome for each book
+     */
+    @Override
+    public BulkLoanResponseDto bulkReturnBooks(BulkLoanRequestDto requestDto) {
+        Instant deadline = remoteCallExecutor.deadline();
+        String memberIin = requestDto.getMemberIin();
+        Set<String> bookIsbns = new LinkedHashSet<>(requestDto.getBookIsbns());
+
+        Map<Long, LoanState> previousStates = new HashMap<>();
+        List<Loan> loans = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Loan> activeLoans = loanRepository.findByMemberIinAndBookIsbnInAndStatusIn(
+                    memberIin, bookIsbns, ACTIVE_STATUSES);
+
+            for (Loan loan : activeLoans) {
+                previousStates.put(loan.getId(), new LoanState(loan.getStatus(), loan.getReturnDate()));
+                loan.setReturnDate(LocalDate.now());
+                loan.setStatus(Loan.LoanStatus.RETURNED);
+            }
+
+            return activeLoans;
+        });
+
+        Set<String> putBack = Set.of();
+        if (!loans.isEmpty()) {
+            List<String> returnedIsbns = loans.stream().map(Loan::getBookIsbn).toList();
+            try {
+                putBack = remoteCallExecutor.await(
+                        remoteCallExecutor.submit(() -> booksFeignClient.returnBooks(returnedIsbns)), deadline);
+            } catch (RuntimeException e) {
+                restoreLoans(loans, previousStates);
+                throw e;
+            }
+        }
+
+        Set<String> takenBack = putBack;
+        Map<Boolean, List<Loan>> outcome = loans.stream()
+                .collect(Collectors.partitioningBy(loan -> takenBack.contains(loan.getBookIsbn())));
+        if (!outcome.get(false).isEmpty()) {
+            restoreLoans(outcome.get(false), previousStates);
+        }
+
+        Map<String, Loan> returned = outcome.get(true).stream()
+                .collect(Collectors.toMap(Loan::getBookIsbn, loan -> loan));
+        Set<String> notPutBack = outcome.get(false).stream().map(Loan::getBookIsbn).collect(Collectors.toSet());
+        List<BulkLoanItemDto> items = new ArrayList<>(bookIsbns.size());
+
+        for (String bookIsbn : bookIsbns) {
+            Loan loan = returned.get(bookIsbn);
+
+            if (loan != null) {
+                items.add(new BulkLoanItemDto(bookIsbn, BulkLoanItemDto.Outcome.RETURNED,
+                        null, loan.getLoanDate(), loan.getReturnDate()));
+            } else if (notPutBack.contains(bookIsbn)) {
+                items.add(BulkLoanItemDto.failed(bookIsbn, "the copy was not taken back"));
+            } else {
+                items.add(BulkLoanItemDto.failed(bookIsbn, "no loan"));
+            }
+        }
+
+        return new BulkLoanResponseDto(memberIin, items);
+    }
+
+    /**
+     * Puts loans that were marked returned back into the status and return date they had before, because
+     * their copies were not taken back by the books service.
+     */
+    private void restoreLoans(List<Loan> loans, Map<Long, LoanState> previousStates) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (Loan loan : loanRepository.findAllById(loans.stream().map(Loan::getId).toList())) {
+                LoanState previousState = previousStates.get(loan.getId());
+                loan.setStatus(previousState.status());
+                loan.setReturnDate(previousState.returnDate());
+            }
+        });
+    }
+
+    private record LoanState(Loan.LoanStatus status, LocalDate returnDate) {
+    }
+
+    /**
+     * Starts an asynchronous checkout. A reserve-copy command is sent to the books service and the loan is
+     * created when the reservation is confirmed.
+     *
+     * @param requestDto request loan data transfer object
+     * @return DTO containing the pending checkout
+     * @throws BookAlreadyBorrowedException if the member has already borrowed this book
+     */
+    @Override
+    public CheckoutResponseDto startCheckout(LoanRequestDto requestDto) {
+        if (loanRepository.existsByBookIsbnAndMemberIinAndStatusIn(
+                requestDto.getBookIsbn(), requestDto.getMemberIin(), ACTIVE_STATUSES)) {
+            throw new BookAlreadyBorrowedException(
+                    "A member has already borrowed this book: book isbn: " + requestDto.getBookIsbn()
+                            + ", member iin: " + requestDto.getMemberIin());
+        }
+
+        CheckoutSaga checkoutSaga = new CheckoutSaga(
+                UUID.randomUUID().toString(),
+                requestDto.getBookIsbn(),
+                requestDto.getMemberIin(),
+                CheckoutSaga.CheckoutStatus.PENDING,
+                null,
+                null,
+                LocalDateTime.now().plus(checkoutProperties.getTimeout())
+        );
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            checkoutSagaRepository.save(checkoutSaga);
+            outboxWriter.add("reserveCopy-out-0", checkoutSaga.getId(),
+                    new ReserveCopyCommandDto(checkoutSaga.getId(), checkoutSaga.getBookIsbn()));
+        });
+
+        return toCheckoutResponseDto(checkoutSaga);
+    }
+
+    /**
+     * Finds the state of a checkout.
+     *
+     * @param checkoutId id of the checkout
+     * @return DTO containing the state of the checkout
+     * @throws ResourceNotFoundException if a checkout is not found
+     */
+    @Override
+    public CheckoutResponseDto fetchCheckout(String checkoutId) {
+        CheckoutSaga checkoutSaga = checkoutSagaRepository.findById(checkoutId).orElseThrow(
+                () -> new ResourceNotFoundException("Checkout", "id", checkoutId)
+        );
+
+        return toCheckoutResponseDto(checkoutSaga);
+    }
+
+    /**
+     * Applies the answer of the books service to a checkout. A confirmed reservation creates the loan; if the
+     * loan cannot be created the copy is released again. Answers for checkouts that are no longer pending are
+     * ignored, their copy is released by whatever ended them.
+     *
+     * @param result reservation result sent by the books service
+     */
+    @Override
+    public void completeCheckout(CopyReservationResultDto result) {
+        CheckoutSaga pending = checkoutSagaRepository.findById(result.checkoutId()).orElse(null);
+
+        if (pending == null || pending.getStatus() != CheckoutSaga.CheckoutStatus.PENDING) {
+            log.debug("Ignoring the reservation result of a checkout that is not pending: {}", result);
+            return;
+        }
+
+        BookDto bookDto = null;
+        MemberDto memberDto = null;
+
+        if (result.reserved()) {
+            Instant deadline = remoteCallExecutor.deadline();
+            CompletableFuture<BookDto> bookFuture = remoteCallExecutor.submit(
+                    () -> lookupClient.fetchBook(pending.getBookIsbn()));
+            CompletableFuture<MemberDto> memberFuture = remoteCallExecutor.submit(
+                    () -> lookupClient.fetchMember(pending.getMemberIin()));
+
+            bookDto = remoteCallExecutor.await(bookFuture, deadline);
+            memberDto = remoteCallExecutor.await(memberFuture, deadline);
+        }
+
+        BookDto book = bookDto;
+        MemberDto member = memberDto;
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            CheckoutSaga checkoutSaga = checkoutSagaRepository.lockById(result.checkoutId()).orElseThrow();
+
+            if (checkoutSaga.getStatus() != CheckoutSaga.CheckoutStatus.PENDING) {
+                return;
+            }
+
+            if (!result.reserved()) {
+                checkoutSaga.setStatus(CheckoutSaga.CheckoutStatus.FAILED);
+                checkoutSaga.setReason("no available books");
+                return;
+            }
+
+            String reason = null;
+            if (book == null || member == null) {
+                reason = "book or member not found";
+            } else if (loanRepository.existsByBookIsbnAndMemberIinAndStatusIn(
+                    checkoutSaga.getBookIsbn(), checkoutSaga.getMemberIin(), ACTIVE_STATUSES)) {
+                reason = "a member has already borrowed this book";
+            }
+
+            if (reason != null) {
+                checkoutSaga.setStatus(CheckoutSaga.CheckoutStatus.FAILED);
+                checkoutSaga.setReason(reason);
+                sendReleaseCopy(checkoutSaga);
+                return;
+            }
+
+            Loan loan = new Loan();
+            loan.setBookIsbn(checkoutSaga.getBookIsbn());
+            loan.setMemberIin(checkoutSaga.getMemberIin());
+            loan.setLoanDate(LocalDate.now());
+            loan.setReturnDate(LocalDate.now().plusDays(7));
+            loan.setStatus(Loan.LoanStatus.BORROWED);
+            loan.setBookTitle(book.getTitle());
+            loan.setBookAuthor(book.getAuthor());
+            loan.setMemberCardNumber(member.getCardNumber());
+            loan.setMemberFirstName(member.getFirstName());
+            loan.setMemberLastName(member.getLastName());
+            loan = loanRepository.save(loan);
+
+            checkoutSaga.setStatus(CheckoutSaga.CheckoutStatus.COMPLETED);
+            checkoutSaga.setLoanId(loan.getId());
+
+            sendLoanCreated(loan, book, member);
+        });
+    }
+
+    /**
+     * Times out pending checkouts whose deadline has passed and releases their copies.
+     *
+     * @param batchSize maximum number of checkouts to time out
+     * @return number of checkouts timed out
+     */
+    @Override
+    public int expireCheckouts(int batchSize) {
+        Integer expired = new TransactionTemplate(transactionManager).execute(status -> {
+            List<CheckoutSaga> checkoutSagas = checkoutSagaRepository.lockExpired(batchSize);
+
+            for (CheckoutSaga checkoutSaga : checkoutSagas) {
+                checkoutSaga.setStatus(CheckoutSaga.CheckoutStatus.TIMED_OUT);
+                checkoutSaga.setReason("the books service did not answer in time");
+                sendReleaseCopy(checkoutSaga);
+            }
+
+            return checkoutSagas.size();
+        });
+
+        return expired == null ? 0 : expired;
+    }
+
+    private void sendReleaseCopy(CheckoutSaga checkoutSaga) {
+        log.info("Adding a releaseCopy command to the outbox for the checkout: {}", checkoutSaga.getId());
+
+        outboxWriter.add("releaseCopy-out-0", checkoutSaga.getId(),
+                new ReleaseCopyCommandDto(checkoutSaga.getId(), checkoutSaga.getBookIsbn()));
+    }
+
+    private CheckoutResponseDto toCheckoutResponseDto(CheckoutSaga checkoutSaga) {
+        return new CheckoutResponseDto(
+                checkoutSaga.getId(),
+                checkoutSaga.getBookIsbn(),
+                checkoutSaga.getMemberIin(),
+                checkoutSaga.getStatus(),
+                checkoutSaga.getReason(),
+                checkoutSaga.getLoanId()
+        );
     }
 
     /**
@@ -167,23 +847,37 @@ public class LoanServiceImpl implements ILoanService {
      */
     @Override
     public LoanDetailsResponseDto returnBook(LoanRequestDto requestDto) {
+        Instant deadline = remoteCallExecutor.deadline();
+        CompletableFuture<MemberDto> memberFuture = remoteCallExecutor.submit(
+                () -> lookupClient.fetchMember(requestDto.getMemberIin()));
+
         Loan loan = returnBookTransactional(requestDto);
 
-        booksFeignClient.returnBook(requestDto.getBookIsbn());
+        CompletableFuture<Boolean> returnFuture;
+        try {
+            returnFuture = remoteCallExecutor.submit(() -> booksFeignClient.returnBook(requestDto.getBookIsbn()));
+        } catch (ConcurrencyLimitExceededException e) {
+            // The loan is already returned, so its copy is put back even when the pool is saturated
+            returnFuture = CompletableFuture.completedFuture(booksFeignClient.returnBook(requestDto.getBookIsbn()));
+        }
+        CompletableFuture<BookDto> bookFuture = remoteCallExecutor.submit(
+                () -> lookupClient.fetchBook(requestDto.getBookIsbn()));
+
+        remoteCallExecutor.await(returnFuture, deadline);
 
         return new LoanDetailsResponseDto(
                 loan.getLoanDate(),
                 loan.getReturnDate(),
                 loan.getStatus(),
-                membersFeignClient.fetchMemberByIin(requestDto.getMemberIin()).getBody(),
-                booksFeignClient.fetchBookDetails(requestDto.getBookIsbn()).getBody()
+                remoteCallExecutor.await(memberFuture, deadline),
+                remoteCallExecutor.await(bookFuture, deadline)
         );
     }
 
     @Transactional
     protected Loan returnBookTransactional(LoanRequestDto requestDto) {
-        Loan loan = loanRepository.findByBookIsbnAndMemberIinAndStatus(
-                requestDto.getBookIsbn(), requestDto.getMemberIin(), Loan.LoanStatus.BORROWED);
+        Loan loan = loanRepository.findByBookIsbnAndMemberIinAndStatusIn(
+                requestDto.getBookIsbn(), requestDto.getMemberIin(), ACTIVE_STATUSES);
 
         if (loan == null) {
             throw new ResourceNotFoundException(
@@ -205,10 +899,16 @@ public class LoanServiceImpl implements ILoanService {
      */
     @Override
     public LoanDetailsResponseDto extendLoan(LoanRequestDto requestDto) {
+        Instant deadline = remoteCallExecutor.deadline();
+        CompletableFuture<MemberDto> memberFuture = remoteCallExecutor.submit(
+                () -> lookupClient.fetchMember(requestDto.getMemberIin()));
+        CompletableFuture<BookDto> bookFuture = remoteCallExecutor.submit(
+                () -> lookupClient.fetchBook(requestDto.getBookIsbn()));
+
         Loan loan = extendLoanTransactional(requestDto);
 
-        MemberDto memberDto = membersFeignClient.fetchMemberByIin(requestDto.getMemberIin()).getBody();
-        BookDto bookDto = booksFeignClient.fetchBookDetails(requestDto.getBookIsbn()).getBody();
+        MemberDto memberDto = remoteCallExecutor.await(memberFuture, deadline);
+        BookDto bookDto = remoteCallExecutor.await(bookFuture, deadline);
 
         return new LoanDetailsResponseDto(
                 loan.getLoanDate(),
@@ -221,8 +921,8 @@ public class LoanServiceImpl implements ILoanService {
 
     @Transactional
     protected Loan extendLoanTransactional(LoanRequestDto requestDto) {
-        Loan loan = loanRepository.findByBookIsbnAndMemberIinAndStatus(
-                requestDto.getBookIsbn(), requestDto.getMemberIin(), Loan.LoanStatus.BORROWED);
+        Loan loan = loanRepository.findByBookIsbnAndMemberIinAndStatusIn(
+                requestDto.getBookIsbn(), requestDto.getMemberIin(), ACTIVE_STATUSES);
 
         if (loan == null) {
             throw new ResourceNotFoundException(
@@ -242,27 +942,102 @@ public class LoanServiceImpl implements ILoanService {
     }
 
     /**
-     * Updates communication status
+     * Fills in the book and member snapshot of the next loans that were created without one.
      *
-     * @param bookIsbn  to identify the book
-     * @param memberIin to identify the member
-     * @return boolean indicating if the update of communication status is successful or not
+     * @param afterId   id after which to look for loans without a snapshot
+     * @param batchSize maximum number of loans to look at
+     * @return id of the last loan looked at, or {@code -1} if there are no loans without a snapshot after afterId
      */
     @Override
-    public boolean updateCommunicationStatus(String bookIsbn, String memberIin) {
-        boolean isUpdated = false;
+    public long backfillSnapshots(long afterId, int batchSize) {
+        List<Loan> loans = loanRepository.findMissingSnapshot(afterId, Limit.of(batchSize));
 
-        if (bookIsbn != null && !bookIsbn.isEmpty() && memberIin != null && !memberIin.isEmpty()) {
-            Loan loan = loanRepository.findByBookIsbnAndMemberIinAndStatus(
-                    bookIsbn, memberIin, Loan.LoanStatus.BORROWED
-            );
+        if (loans.isEmpty()) {
+            return -1;
+        }
 
-            loan.setCommunicationStatus(true);
-            loanRepository.save(loan);
+        Set<String> isbns = loans.stream()
+                .filter(loan -> loan.getBookTitle() == null)
+                .map(Loan::getBookIsbn)
+                .collect(Collectors.toSet());
+        Set<String> iins = loans.stream()
+                .filter(loan -> loan.getMemberCardNumber() == null)
+                .map(Loan::getMemberIin)
+                .collect(Collectors.toSet());
 
-            isUpdated = true;
+        for (BookDto bookDto : lookupClient.fetchBooks(isbns).values()) {
+            loanRepository.fillBookSnapshot(bookDto.getIsbn(), bookDto.getTitle(), bookDto.getAuthor());
         }
+        for (MemberDto memberDto : lookupClient.fetchMembers(iins).values()) {
+            loanRepository.fillMemberSnapshot(
+                    memberDto.getIin(), memberDto.getCardNumber(), memberDto.getFirstName(), memberDto.getLastName());
+        }
+
+        return loans.get(loans.size() - 1).getId();
+    }
+
+    /**
+     * Overwrites the book snapshot of all loans of the book with its current details.
+     *
+     * @param bookIsbn isbn of the changed book
+     */
+    @Override
+    public void refreshBookSnapshot(String bookIsbn) {
+        BookDto bookDto = lookupClient.fetchBook(bookIsbn);
+
+        if (bookDto != null) {
+            int updated = loanRepository.refreshBookSnapshot(bookIsbn, bookDto.getTitle(), bookDto.getAuthor());
+            log.debug("Refreshed the book snapshot of {} loans of book {}", updated, bookIsbn);
+        }
+    }
+
+    /**
+     * Overwrites the member snapshot of all loans of the member with their current details.
+     *
+     * @param memberIin iin of the changed member
+     */
+    @Override
+    public void refreshMemberSnapshot(String memberIin) {
+        MemberDto memberDto = lookupClient.fetchMember(memberIin);
+
+        if (memberDto != null) {
+            int updated = loanRepository.refreshMemberSnapshot(
+                    memberIin, memberDto.getCardNumber(), memberDto.getFirstName(), memberDto.getLastName());
+            log.debug("Refreshed the member snapshot of {} loans of member {}", updated, memberIin);
+        }
+    }
+
+    /**
+     * Updates communication status of the active loans in one statement. Keys without an active loan are skipped.
+     *
+     * @param loanKeys keys of the loans in the form {@code isbn/iin}
+     * @return number of updated loans
+     */
+    @Override
+    public int updateCommunicationStatus(Collection<String> loanKeys) {
+        List<String> bookIsbns = new ArrayList<>(loanKeys.size());
+        List<String> memberIins = new ArrayList<>(loanKeys.size());
+
+        for (String loanKey : loanKeys) {
+            String[] parts = loanKey.split("/");
+
+            if (parts.length == 2 && !parts[0].isEmpty() && !parts[1].isEmpty()) {
+                bookIsbns.add(parts[0]);
+                memberIins.add(parts[1]);
+            } else {
+                log.warn("Skipping a malformed loan key: {}", loanKey);
+            }
+        }
+
+        if (bookIsbns.isEmpty()) {
+            return 0;
+        }
+
+        int updated = loanRepository.markCommunicated(bookIsbns.toArray(String[]::new),
+                memberIins.toArray(String[]::new), LocalDateTime.now(), COMMUNICATION_UPDATED_BY);
+
+        log.debug("Updated communication status of {} of {} loans", updated, bookIsbns.size());
 
-        return isUpdated;
+        return updated;
     }
 }
@@ -0,0 +1,81 @@
+package com.bekassyl.loans.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    @Test
+    void doesNotScheduleDeadlinesOfTheCurrentTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10, 5_500);
+
+        assertFalse(wheel.add(4_000, "past"));
+        assertFalse(wheel.add(5_000, "start of the tick"));
+        assertFalse(wheel.add(5_999, "end of the tick"));
+        assertTrue(wheel.add(6_000, "next tick"));
+    }
+
+    @Test
+    void expiresAnItemOnceItsTickIsReached() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10, 0);
+        List<String> expired = new ArrayList<>();
+        wheel.add(3_500, "item");
+
+        wheel.advance(2_999, expired::add);
+        assertEquals(List.of(), expired);
+
+        wheel.advance(3_000, expired::add);
+        assertEquals(List.of("item"), expired);
+
+        wheel.advance(20_000, expired::add);
+        assertEquals(List.of("item"), expired);
+    }
+
+    @Test
+    void cascadesOverflowLevelsDownToTheirTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+        List<String> expired = new ArrayList<>();
+
+        // beyond three levels of 40, 160 and 640 ms
+        assertTrue(wheel.add(1_000, "far"));
+        assertTrue(wheel.add(170, "overflow"));
+
+        wheel.advance(169, expired::add);
+        assertEquals(List.of(), expired);
+
+        wheel.advance(170, expired::add);
+        assertEquals(List.of("overflow"), expired);
+
+        wheel.advance(999, expired::add);
+        assertEquals(List.of("overflow"), expired);
+
+        wheel.advance(1_000, expired::add);
+        assertEquals(List.of("overflow", "far"), expired);
+    }
+
+    @Test
+    void expiresItemsInDeadlineOrder() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 8, 0);
+        List<Long> deadlines = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 1_000; i++) {
+            long deadline = 10 * (1 + random.nextInt(10_000));
+            if (!deadlines.contains(deadline)) {
+                deadlines.add(deadline);
+                wheel.add(deadline, deadline);
+            }
+        }
+
+        List<Long> expired = new ArrayList<>();
+        wheel.advance(100_000, expired::add);
+
+        assertEquals(deadlines.stream().sorted().toList(), expired);
+    }
+}
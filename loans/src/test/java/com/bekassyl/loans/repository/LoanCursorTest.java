@@ -0,0 +1,62 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.entity.Loan;
+import com.bekassyl.loans.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoanCursorTest {
+    @Test
+    void decodesWhatItEncodes() {
+        LoanCursor cursor = new LoanCursor(LocalDate.of(2024, 1, 31), 9_007_199_254_740_993L);
+
+        assertEquals(cursor, LoanCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodesTheLastLoanOfAPage() {
+        Loan loan = new Loan();
+        loan.setId(102L);
+        loan.setLoanDate(LocalDate.of(2024, 1, 1));
+
+        assertEquals(new LoanCursor(LocalDate.of(2024, 1, 1), 102L), LoanCursor.decode(LoanCursor.of(loan).encode()));
+    }
+
+    @Test
+    void encodesUrlSafeWithoutPadding() {
+        String token = new LoanCursor(LocalDate.of(2024, 12, 31), 1L).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void rejectsTokensThatAreNotBase64() {
+        assertThrows(InvalidCursorException.class, () -> LoanCursor.decode("not a cursor!"));
+    }
+
+    @Test
+    void rejectsTokensWithoutSeparator() {
+        assertThrows(InvalidCursorException.class, () -> LoanCursor.decode(encode("2024-01-01")));
+    }
+
+    @Test
+    void rejectsTokensWithInvalidDate() {
+        assertThrows(InvalidCursorException.class, () -> LoanCursor.decode(encode("2024-13-01:5")));
+    }
+
+    @Test
+    void rejectsTokensWithInvalidId() {
+        assertThrows(InvalidCursorException.class, () -> LoanCursor.decode(encode("2024-01-01:abc")));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+package com.bekassyl.loans.repository;
+
+import com.bekassyl.loans.audit.AuditAwareImpl;
+import com.bekassyl.loans.entity.Loan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares inserting loans row by row (one round trip per loan, as with IDENTITY ids) with the batched
+ * insert used by the bulk checkout. Runs against the configured PostgreSQL database and rolls back.
+ * Run with {@code mvn test -Dtest=LoanInsertBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=5000]}.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoanInsertBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 5000);
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void insertLoans() {
+        long rowByRow = measure(() -> loans(0).forEach(loan -> loanRepository.saveAndFlush(loan)));
+        long batched = measure(() -> loanRepository.saveAll(loans(ROWS)));
+
+        report("row by row", rowByRow);
+        report("batched", batched);
+    }
+
+    private long measure(Runnable insert) {
+        long start = System.nanoTime();
+        insert.run();
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+
+        entityManager.clear();
+
+        return elapsed;
+    }
+
+    private List<Loan> loans(int offset) {
+        List<Loan> loans = new ArrayList<>(ROWS);
+
+        for (int i = 0; i < ROWS; i++) {
+            Loan loan = new Loan();
+            loan.setBookIsbn(String.format("999%010d", offset + i));
+            loan.setMemberIin("999999999999");
+            loan.setLoanDate(LocalDate.now());
+            loan.setReturnDate(LocalDate.now().plusDays(7));
+            loan.setStatus(Loan.LoanStatus.BORROWED);
+            loan.setBookTitle("Benchmark book " + i);
+            loan.setBookAuthor("Benchmark author");
+            loans.add(loan);
+        }
+
+        return loans;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("bulk checkout insert, %s: %d rows in %d ms, %.0f rows/sec%n",
+                name, ROWS, nanos / 1_000_000, ROWS * 1e9 / nanos);
+    }
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Loan.class)
+    @EnableJpaRepositories(basePackageClasses = LoanRepository.class)
+    @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
+    @Import(AuditAwareImpl.class)
+    static class BenchmarkConfiguration {
+    }
+}
@@ -0,0 +1,70 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.dto.BookDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the JSON and CBOR encodings of the east-west calls: encoded size and CPU time to encode and
+ * decode a bulk book lookup response, per call. Network latency is not part of it.
+ * Run with {@code mvn test -Dtest=RpcEncodingBenchmarkTest -Dbenchmark=true [-Dbenchmark.books=100]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RpcEncodingBenchmarkTest {
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 100);
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+    private static final TypeReference<List<BookDto>> BOOK_LIST = new TypeReference<>() {
+    };
+
+    @Test
+    void compareEncodings() throws IOException {
+        List<BookDto> books = books();
+
+        measure("json", Jackson2ObjectMapperBuilder.json().build(), books);
+        measure("cbor", Jackson2ObjectMapperBuilder.cbor().build(), books);
+    }
+
+    private static void measure(String name, ObjectMapper mapper, List<BookDto> books) throws IOException {
+        byte[] encoded = mapper.writeValueAsBytes(books);
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            sink += mapper.writeValueAsBytes(books).length;
+            sink += mapper.readValue(encoded, BOOK_LIST).size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += mapper.writeValueAsBytes(books).length;
+        }
+        long encodeNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += mapper.readValue(encoded, BOOK_LIST).size();
+        }
+        long decodeNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.printf("%s, %d books: %d bytes, encode %d us/call, decode %d us/call (%d)%n",
+                name, BOOKS, encoded.length, encodeNanos / 1000, decodeNanos / 1000, sink % 10);
+    }
+
+    private static List<BookDto> books() {
+        List<BookDto> books = new ArrayList<>(BOOKS);
+
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(new BookDto("Three comrades, volume " + i, "Erich Maria Remarque", "Classic",
+                    String.format("978%010d", i), 100, 40, false));
+        }
+
+        return books;
+    }
+}
@@ -0,0 +1,104 @@
+package com.bekassyl.loans.service.client;
+
+import com.bekassyl.loans.exception.RemoteCallTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sharesTheResultWithWaiters() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            return "result";
+        }));
+        Future<String> waiter = startWaiter(singleFlight);
+        release.countDown();
+
+        assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("result", waiter.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void completesWaitersWhenTheCallThrowsAnError() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            throw new StackOverflowError();
+        }));
+        Future<String> waiter = startWaiter(singleFlight);
+        release.countDown();
+
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, leaderFailure.getCause());
+        assertInstanceOf(StackOverflowError.class, waiterFailure.getCause());
+    }
+
+    @Test
+    void stopsWaitingAtTheDeadline() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofMillis(50), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            return "late";
+        }));
+        Future<String> waiter = startWaiter(singleFlight);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RemoteCallTimeoutException.class, failure.getCause());
+        release.countDown();
+    }
+
+    /**
+     * Starts a second call of the same key once the first is in flight and returns when it has joined it.
+     */
+    private Future<String> startWaiter(SingleFlight<String, String> singleFlight) throws InterruptedException {
+        while (meterRegistry.counter("loans.lookup.calls", "lookup", "test").count() < 1) {
+            Thread.sleep(1);
+        }
+
+        Future<String> waiter = executor.submit(() -> singleFlight.execute("key", () -> "own call"));
+
+        while (meterRegistry.counter("loans.lookup.coalesced", "lookup", "test").count() < 1) {
+            Thread.sleep(1);
+        }
+
+        return waiter;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.bekassyl.members;
 
+import com.bekassyl.members.config.OutboxProperties;
+import com.bekassyl.members.config.ReplicaProperties;
 import com.bekassyl.members.dto.MembersInfoDto;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Contact;
@@ -8,9 +10,11 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableConfigurationProperties(MembersInfoDto.class)
+@EnableConfigurationProperties({MembersInfoDto.class, OutboxProperties.class, ReplicaProperties.class})
+@EnableScheduling
 @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl")
 @OpenAPIDefinition(
         info = @Info(
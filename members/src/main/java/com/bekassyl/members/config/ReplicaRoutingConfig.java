@@ -0,0 +1,66 @@
+package com.bekassyl.members.config;
+
+import com.bekassyl.members.datasource.ReplicaLagMonitor;
+import com.bekassyl.members.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the single {@code spring.datasource} pool with a primary pool plus one pool per replica when
+ * {@code members.replicas.enabled} is set. Read-only transactions go to the replicas, the rest to the primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "members.replicas", name = "enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                             ReplicaProperties replicaProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("members-primary");
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReplicaProperties.Node> nodes = replicaProperties.getNodes();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            ReplicaProperties.Node node = nodes.get(i);
+            String name = "members-replica-" + (i + 1);
+
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName(name);
+            replica.setJdbcUrl(node.getUrl());
+            replica.setUsername(node.getUsername() != null ? node.getUsername() : dataSourceProperties.determineUsername());
+            replica.setPassword(node.getPassword() != null ? node.getPassword() : dataSourceProperties.determinePassword());
+            replica.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            replica.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+            replica.setReadOnly(true);
+
+            replicas.put(name, replica);
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaRoutingDataSource replicaRoutingDataSource,
+                                               ReplicaProperties replicaProperties) {
+        return new ReplicaLagMonitor(replicaRoutingDataSource, replicaProperties);
+    }
+}
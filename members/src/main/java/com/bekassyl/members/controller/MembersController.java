@@ -23,6 +23,8 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 @Tag(
@@ -30,7 +32,7 @@ import java.util.Map;
         description = "CRUD REST APIs in JaryqLibrary to CREATE, UPDATE, FETCH AND DELETE member details"
 )
 @RestController
-@RequestMapping(path = "/members/api", produces = {MediaType.APPLICATION_JSON_VALUE})
+@RequestMapping(path = "/members/api", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
 @RequiredArgsConstructor
 @Validated
 @Slf4j
@@ -104,6 +106,39 @@ public class MembersController {
     }
 
 
+    @Operation(
+            summary = "Get Members Details In Bulk REST API",
+            description = "REST API to get Member details for a list of iins in one call"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "HTTP Status OK"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "HTTP Status Internal Server Error",
+                    content = @Content(
+                            schema = @Schema(implementation = ErrorResponseDto.class)
+                    )
+            )
+    })
+    @PostMapping("/fetch-bulk-by-iin")
+    public ResponseEntity<List<MemberDto>> fetchMembersByIin(
+            @RequestBody
+            @Size(max = 1000, message = "No more than 1000 IINs can be requested at once")
+            List<@Size(max = 12, message = "IIN must not exceed 12 characters") String> iins
+    ) {
+        log.debug("fetchMembersByIin() method starts");
+
+        List<MemberDto> memberDtos = memberService.fetchMembersByIin(new HashSet<>(iins));
+
+        log.debug("fetchMembersByIin() method ends");
+
+        return ResponseEntity.ok(memberDtos);
+    }
+
+
     @Operation(
             summary = "Create Member REST API",
             description = "REST API to create a new Member in JaryqLibrary"
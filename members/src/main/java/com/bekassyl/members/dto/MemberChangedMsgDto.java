@@ -0,0 +1,8 @@
+package com.bekassyl.members.dto;
+
+public record MemberChangedMsgDto(String iin,
+                                  ChangeType change) {
+    public enum ChangeType {
+        UPDATED, DELETED
+    }
+}
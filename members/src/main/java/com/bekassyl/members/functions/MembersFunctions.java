@@ -5,17 +5,21 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 @Slf4j
 @Configuration
 public class MembersFunctions {
+    /**
+     * Consumes the whole poll as one batch, so every poll becomes a single update.
+     */
     @Bean
-    public Consumer<String> updateCommunication(IMemberService memberService) {
-        return memberIin -> {
-            log.info("Updating communication status for the member: {}", memberIin);
+    public Consumer<List<String>> updateCommunication(IMemberService memberService) {
+        return memberIins -> {
+            log.info("Updating communication status for {} members", memberIins.size());
 
-            memberService.updateCommunicationStatus(memberIin);
+            memberService.updateCommunicationStatus(memberIins);
         };
     }
 }
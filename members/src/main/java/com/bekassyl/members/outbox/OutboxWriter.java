@@ -0,0 +1,48 @@
+package com.bekassyl.members.outbox;
+
+import com.bekassyl.members.entity.OutboxEvent;
+import com.bekassyl.members.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records events in the outbox table. Must be called inside the transaction of the change the event
+ * describes, so the event is stored if and only if the change is committed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxWriter {
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param binding output binding the event is published to, e.g. {@code sendLoanCreated-out-0}
+     * @param key     message key, events with the same key keep their order
+     * @param payload event, serialized as JSON
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(String binding, String key, Object payload) {
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setBinding(binding);
+        outboxEvent.setMessageKey(key);
+        outboxEvent.setCreatedAt(LocalDateTime.now());
+
+        try {
+            outboxEvent.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event cannot be serialized: " + payload, e);
+        }
+
+        log.debug("Adding an event for {} to the outbox: {}", binding, payload);
+
+        outboxEventRepository.save(outboxEvent);
+    }
+}
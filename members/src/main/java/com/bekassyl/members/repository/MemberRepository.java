@@ -2,15 +2,35 @@ package com.bekassyl.members.repository;
 
 import com.bekassyl.members.entity.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MemberRepository extends JpaRepository<Member, Long> {
     Optional<Member> findByIin(String iin);
 
+    List<Member> findByIinIn(Collection<String> iins);
+
     Optional<Member> findByCardNumber(String cardNumber);
 
     boolean existsByCardNumber(String cardNumber);
+
+    /**
+     * Marks the communication status of the members in one statement. Unknown iins and members already marked
+     * are skipped.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Member m set m.communicationStatus = true, m.updatedAt = :now, m.updatedBy = :updatedBy " +
+            "where m.iin in :iins and (m.communicationStatus = false or m.communicationStatus is null)")
+    int markCommunicated(@Param("iins") Collection<String> iins, @Param("now") LocalDateTime now,
+                         @Param("updatedBy") String updatedBy);
 }
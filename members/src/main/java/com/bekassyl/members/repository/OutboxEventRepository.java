@@ -0,0 +1,19 @@
+package com.bekassyl.members.repository;
+
+import com.bekassyl.members.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    /**
+     * Locks the oldest pending events. Rows locked by another relay are skipped, so several replicas can
+     * relay at the same time without publishing an event twice.
+     */
+    @Query(value = "SELECT * FROM outbox_events ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockPending(@Param("limit") int limit);
+}
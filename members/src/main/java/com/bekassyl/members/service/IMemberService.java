@@ -4,6 +4,9 @@ import com.bekassyl.members.dto.MemberDto;
 import com.bekassyl.members.exception.ResourceNotFoundException;
 import com.bekassyl.members.exception.MemberAlreadyExistsException;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface IMemberService {
     /**
      * Finds member details by cardNumber.
@@ -23,6 +26,14 @@ public interface IMemberService {
      */
     MemberDto fetchMemberByIin(String iin);
 
+    /**
+     * Finds member details for several iins at once.
+     *
+     * @param iins iins to search for
+     * @return DTOs for the members that were found, iins without a member are skipped
+     */
+    List<MemberDto> fetchMembersByIin(Collection<String> iins);
+
     /**
      * Saves a new member.
      *
@@ -59,10 +70,10 @@ public interface IMemberService {
     boolean deleteMemberByIin(String iin);
 
     /**
-     * Updates communication status
+     * Updates communication status of the members in one statement. Unknown iins are skipped.
      *
-     * @param iin to identify the member
-     * @return boolean indicating if the update of communication status is successful or not
+     * @param iins to identify the members
+     * @return number of updated members
      */
-    boolean updateCommunicationStatus(String iin);
+    int updateCommunicationStatus(Collection<String> iins);
 }
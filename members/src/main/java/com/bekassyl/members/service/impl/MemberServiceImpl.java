@@ -1,20 +1,24 @@
 package com.bekassyl.members.service.impl;
 
+import com.bekassyl.members.dto.MemberChangedMsgDto;
 import com.bekassyl.members.dto.MemberDto;
 import com.bekassyl.members.dto.MemberMsgDto;
 import com.bekassyl.members.entity.Member;
 import com.bekassyl.members.exception.ResourceNotFoundException;
 import com.bekassyl.members.exception.MemberAlreadyExistsException;
 import com.bekassyl.members.mapper.MemberMapper;
+import com.bekassyl.members.outbox.OutboxWriter;
 import com.bekassyl.members.repository.MemberRepository;
 import com.bekassyl.members.service.IMemberService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -23,8 +27,9 @@ import java.security.SecureRandom;
 public class MemberServiceImpl implements IMemberService {
     private final MemberRepository memberRepository;
     private final MemberMapper memberMapper;
+    private static final String COMMUNICATION_UPDATED_BY = "MESSAGE";
     private static final SecureRandom secureRandom = new SecureRandom();
-    private final StreamBridge streamBridge;
+    private final OutboxWriter outboxWriter;
 
     /**
      * Finds member details by cardNumber.
@@ -58,6 +63,23 @@ public class MemberServiceImpl implements IMemberService {
         return memberMapper.toDto(member);
     }
 
+    /**
+     * Finds member details for several iins at once.
+     *
+     * @param iins iins to search for
+     * @return DTOs for the members that were found, iins without a member are skipped
+     */
+    @Override
+    public List<MemberDto> fetchMembersByIin(Collection<String> iins) {
+        if (iins.isEmpty()) {
+            return List.of();
+        }
+
+        return memberRepository.findByIinIn(iins).stream()
+                .map(memberMapper::toDto)
+                .toList();
+    }
+
     /**
      * Saves a new member.
      *
@@ -95,11 +117,17 @@ public class MemberServiceImpl implements IMemberService {
                 member.getEmail()
         );
 
-        log.info("Sending a request to the sendMemberCreated with details: {}", memberMsgDto);
+        log.info("Adding a sendMemberCreated event to the outbox with details: {}", memberMsgDto);
+
+        outboxWriter.add("sendMemberCreated-out-0", member.getIin(), memberMsgDto);
+    }
+
+    private void sendMemberChanged(Member member, MemberChangedMsgDto.ChangeType change) {
+        MemberChangedMsgDto memberChangedMsgDto = new MemberChangedMsgDto(member.getIin(), change);
 
-        boolean result = streamBridge.send("sendMemberCreated-out-0", memberMsgDto);
+        log.debug("Adding a sendMemberChanged event to the outbox with details: {}", memberChangedMsgDto);
 
-        log.info("Is the request successfully triggered?: {}", result);
+        outboxWriter.add("sendMemberChanged-out-0", member.getIin(), memberChangedMsgDto);
     }
 
     /**
@@ -124,6 +152,8 @@ public class MemberServiceImpl implements IMemberService {
 
         memberRepository.save(member);
 
+        sendMemberChanged(member, MemberChangedMsgDto.ChangeType.UPDATED);
+
         return true;
     }
 
@@ -143,6 +173,8 @@ public class MemberServiceImpl implements IMemberService {
 
         memberRepository.delete(member);
 
+        sendMemberChanged(member, MemberChangedMsgDto.ChangeType.DELETED);
+
         return true;
     }
 
@@ -162,30 +194,33 @@ public class MemberServiceImpl implements IMemberService {
 
         memberRepository.delete(member);
 
+        sendMemberChanged(member, MemberChangedMsgDto.ChangeType.DELETED);
+
         return true;
     }
 
     /**
-     * Updates communication status
+     * Updates communication status of the members in one statement. Unknown iins are skipped.
      *
-     * @param iin to identify the member
-     * @return boolean indicating if the update of communication status is successful or not
+     * @param iins to identify the members
+     * @return number of updated members
      */
+    @Transactional
     @Override
-    public boolean updateCommunicationStatus(String iin) {
-        boolean isUpdated = false;
-
-        if (iin != null && !iin.isEmpty()) {
-            Member member = memberRepository.findByIin(iin).orElseThrow(
-                    () -> new ResourceNotFoundException("Member", "IIN", iin)
-            );
+    public int updateCommunicationStatus(Collection<String> iins) {
+        List<String> memberIins = iins.stream()
+                .filter(iin -> iin != null && !iin.isEmpty())
+                .distinct()
+                .toList();
+
+        if (memberIins.isEmpty()) {
+            return 0;
+        }
 
-            member.setCommunicationStatus(true);
-            memberRepository.save(member);
+        int updated = memberRepository.markCommunicated(memberIins, LocalDateTime.now(), COMMUNICATION_UPDATED_BY);
 
-            isUpdated = true;
-        }
+        log.debug("Updated communication status of {} of {} members", updated, memberIins.size());
 
-        return isUpdated;
+        return updated;
     }
 }
@@ -12,4 +12,13 @@ CREATE TABLE IF NOT EXISTS members
     created_by    VARCHAR(50)  NOT NULL,
     updated_at    TIMESTAMP,
     updated_by    VARCHAR(50)
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS outbox_events
+(
+    id          BIGSERIAL PRIMARY KEY,
+    binding     VARCHAR(100) NOT NULL,
+    message_key VARCHAR(100),
+    payload     TEXT         NOT NULL,
+    created_at  TIMESTAMP    NOT NULL
+);
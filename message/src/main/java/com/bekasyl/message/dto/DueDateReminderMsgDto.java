@@ -0,0 +1,12 @@
+package com.bekasyl.message.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record DueDateReminderMsgDto(String cardNumber,
+                                    String memberFullName,
+                                    String memberIin,
+                                    List<String> bookNames,
+                                    List<String> bookIsbns,
+                                    LocalDate returnDate) {
+}
@@ -1,5 +1,7 @@
 package com.bekasyl.message.functions;
 
+import com.bekasyl.message.dto.DueDateReminderMsgDto;
+import com.bekasyl.message.dto.LoanBatchMsgDto;
 import com.bekasyl.message.dto.LoanMsgDto;
 import com.bekasyl.message.dto.MemberMsgDto;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +9,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 @Slf4j
@@ -30,4 +34,21 @@ public class MessageFunction {
             return String.format("%s/%s",  loanMsgDto.bookIsbn(), loanMsgDto.memberIin());
         };
     }
+
+    @Bean
+    public Function<LoanBatchMsgDto, List<String>> sendLoansCreated() {
+        return loanBatchMsgDto -> {
+            log.info("Sending an SMS to the member about the processing of several loans with details: {}", loanBatchMsgDto.toString());
+
+            return loanBatchMsgDto.bookIsbns().stream()
+                    .map(bookIsbn -> String.format("%s/%s", bookIsbn, loanBatchMsgDto.memberIin()))
+                    .toList();
+        };
+    }
+
+    @Bean
+    public Consumer<DueDateReminderMsgDto> sendDueDateReminder() {
+        return dueDateReminderMsgDto -> log.info("Sending an SMS to the member about the upcoming return date with details: {}",
+                dueDateReminderMsgDto.toString());
+    }
 }